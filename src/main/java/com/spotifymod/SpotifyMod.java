@@ -5,12 +5,16 @@ import com.spotifymod.debug.LogBuffer;
 import com.spotifymod.commands.CommandParty;
 import com.spotifymod.commands.CommandSpotifyHUD;
 import com.spotifymod.config.SpotifyConfig;
+import com.spotifymod.gui.GuiSpotifyControl;
 import com.spotifymod.gui.SpotifyGuiHandler;
 import com.spotifymod.handlers.KeybindHandler;
 import com.spotifymod.handlers.NametagTrackRenderer;
 import com.spotifymod.network.ModNetworkHandler;
 import com.spotifymod.party.PartyManager;
+import com.spotifymod.playback.PlaybackStateService;
+import com.spotifymod.user.LibraryCache;
 import com.spotifymod.user.ProfileManager;
+import net.minecraft.client.Minecraft;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.Mod.EventHandler;
@@ -20,6 +24,7 @@ import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
 import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
+import org.lwjgl.opengl.Display;
 
 @Mod(modid = SpotifyMod.MODID, version = SpotifyMod.VERSION, name = SpotifyMod.NAME)
 public class SpotifyMod {
@@ -31,31 +36,43 @@ public class SpotifyMod {
     public static SpotifyMod instance;
 
     private SpotifyAPI spotifyAPI;
+    private PlaybackStateService playbackService;
     private SpotifyConfig config;
     private KeybindHandler keybindHandler;
     private ProfileManager profileManager;
+    private LibraryCache libraryCache;
     private PartyManager partyManager;
     private ModNetworkHandler networkHandler;
-    private int tickCounter = 0;
 
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
         config = new SpotifyConfig(event.getSuggestedConfigurationFile());
         profileManager = new ProfileManager(event.getModConfigurationDirectory());
+        libraryCache = new LibraryCache(event.getModConfigurationDirectory(), profileManager);
         spotifyAPI = new SpotifyAPI(config, profileManager);
+        playbackService = new PlaybackStateService(spotifyAPI);
         partyManager = new PartyManager();
-        LogBuffer.get().info("PreInit complete: config, profileManager, spotifyAPI, partyManager initialized");
+        LogBuffer.get().info("PreInit complete: config, profileManager, spotifyAPI, playbackService, partyManager initialized");
     }
 
     @EventHandler
     public void init(FMLInitializationEvent event) {
-        keybindHandler = new KeybindHandler(spotifyAPI);
+        keybindHandler = new KeybindHandler(spotifyAPI, playbackService);
         networkHandler = new ModNetworkHandler();
         MinecraftForge.EVENT_BUS.register(keybindHandler);
-        MinecraftForge.EVENT_BUS.register(new SpotifyGuiHandler(spotifyAPI));
+        SpotifyGuiHandler guiHandler = new SpotifyGuiHandler(spotifyAPI, playbackService);
+        MinecraftForge.EVENT_BUS.register(guiHandler);
         MinecraftForge.EVENT_BUS.register(new NametagTrackRenderer());
         MinecraftForge.EVENT_BUS.register(networkHandler);
+        playbackService.addListener(networkHandler);
         MinecraftForge.EVENT_BUS.register(this);
+
+        // Only poll Spotify while something actually uses the result
+        playbackService.getActivity().addForegroundDemand(guiHandler::isHudVisible);
+        playbackService.getActivity().addForegroundDemand(() ->
+                Minecraft.getMinecraft().currentScreen instanceof GuiSpotifyControl && Display.isActive());
+        playbackService.getActivity().addBackgroundDemand(partyManager::isInParty);
+        playbackService.getActivity().addBackgroundDemand(networkHandler::isBroadcasting);
         LogBuffer.get().info("Init: handlers registered (including network and nametag renderer)");
     }
 
@@ -94,15 +111,14 @@ public class SpotifyMod {
     @SubscribeEvent
     public void onClientTick(TickEvent.ClientTickEvent event) {
         if (event.phase == TickEvent.Phase.END) {
-            tickCounter++;
-            // Sync party state every second (20 ticks)
-            if (tickCounter % 20 == 0) {
-                partyManager.tick();
-                if (networkHandler != null) {
-                    networkHandler.tick();
-                }
-                LogBuffer.get().trace("PartyManager and NetworkHandler tick executed");
+            // Publishes finished polls and starts the next one when due
+            playbackService.tick();
+            // Sends track changes right away, heartbeats when due
+            if (networkHandler != null) {
+                networkHandler.tick();
             }
+            // Party snapshots go out twice a second; the manager keeps its own timers
+            partyManager.tick();
         }
     }
 
@@ -110,6 +126,10 @@ public class SpotifyMod {
         return spotifyAPI;
     }
 
+    public PlaybackStateService getPlaybackService() {
+        return playbackService;
+    }
+
     public SpotifyConfig getConfig() {
         return config;
     }
@@ -118,6 +138,10 @@ public class SpotifyMod {
         return profileManager;
     }
 
+    public LibraryCache getLibraryCache() {
+        return libraryCache;
+    }
+
     public PartyManager getPartyManager() {
         return partyManager;
     }
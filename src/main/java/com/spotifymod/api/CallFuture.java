@@ -0,0 +1,62 @@
+package com.spotifymod.api;
+
+import com.spotifymod.debug.LogBuffer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapts an enqueued OkHttp {@link Call} to a CompletableFuture.
+ * No thread is held while the request is in flight, and cancelling the
+ * future cancels the call. Like the rest of SpotifyAPI, failures complete
+ * with a fallback value instead of exceptionally; the one exception is a
+ * 429, which is passed on so {@link RequestScheduler} can retry it.
+ */
+class CallFuture<T> extends CompletableFuture<T> implements Callback {
+
+    /** Turns a response into a result; runs on the OkHttp dispatcher thread. */
+    interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    private final Call call;
+    private final String name;
+    private final T fallback;
+    private final ResponseHandler<T> handler;
+
+    CallFuture(Call call, String name, T fallback, ResponseHandler<T> handler) {
+        this.call = call;
+        this.name = name;
+        this.fallback = fallback;
+        this.handler = handler;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        call.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+        if (!call.isCanceled()) {
+            LogBuffer.get().error(name + " error: " + e.getMessage());
+        }
+        complete(fallback);
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+        try (Response r = response) {
+            complete(handler.handle(r));
+        } catch (RequestScheduler.RateLimitedException e) {
+            completeExceptionally(e);
+        } catch (Exception e) {
+            LogBuffer.get().error(name + " error: " + e.getMessage());
+            complete(fallback);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.spotifymod.api;
+
+import com.spotifymod.debug.LogBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Latest-wins channel for a player setting such as volume or seek position.
+ * At most one request is in flight; values submitted meanwhile replace each
+ * other and only the newest is sent once the current request finishes. This
+ * keeps a slider drag down to a handful of requests and guarantees the last
+ * value the user chose is the one applied last.
+ *
+ * Every returned future completes with the result of the request that carried
+ * its value or a newer one. A sender that throws counts as a failed request.
+ */
+public class CoalescingCommand<T> {
+    private final Function<T, CompletableFuture<Boolean>> sender;
+
+    private boolean inFlight = false;
+    private T pendingValue;
+    private List<CompletableFuture<Boolean>> pendingWaiters = new ArrayList<>();
+
+    public CoalescingCommand(Function<T, CompletableFuture<Boolean>> sender) {
+        this.sender = sender;
+    }
+
+    public CompletableFuture<Boolean> submit(T value) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        List<CompletableFuture<Boolean>> waiters;
+        synchronized (this) {
+            if (inFlight) {
+                // Replaces whatever was waiting; its callers now wait on this value
+                pendingValue = value;
+                pendingWaiters.add(result);
+                return result;
+            }
+            inFlight = true;
+            waiters = new ArrayList<>();
+            waiters.add(result);
+        }
+        send(value, waiters);
+        return result;
+    }
+
+    private void send(T value, List<CompletableFuture<Boolean>> waiters) {
+        CompletableFuture<Boolean> request;
+        try {
+            request = sender.apply(value);
+        } catch (RuntimeException e) {
+            // Otherwise nothing would ever clear inFlight and every later value would wait forever
+            LogBuffer.get().error("Command failed to send: " + e);
+            request = new CompletableFuture<>();
+            request.completeExceptionally(e);
+        }
+        request.whenComplete((success, error) -> {
+            boolean ok = error == null && Boolean.TRUE.equals(success);
+            T nextValue = null;
+            List<CompletableFuture<Boolean>> nextWaiters = null;
+            synchronized (this) {
+                if (pendingWaiters.isEmpty()) {
+                    inFlight = false;
+                } else {
+                    nextValue = pendingValue;
+                    nextWaiters = pendingWaiters;
+                    pendingValue = null;
+                    pendingWaiters = new ArrayList<>();
+                }
+            }
+            for (CompletableFuture<Boolean> waiter : waiters) {
+                waiter.complete(ok);
+            }
+            if (nextWaiters != null) {
+                send(nextValue, nextWaiters);
+            }
+        });
+    }
+}
@@ -0,0 +1,172 @@
+package com.spotifymod.api;
+
+import com.spotifymod.debug.LogBuffer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads a playlist's tracks page by page.
+ * The first page is requested straight away; later pages are only requested
+ * once the screen scrolls near the end of what is loaded, with at most
+ * {@link #MAX_CONCURRENT_PAGES} requests in flight. Pages can complete out of
+ * order, so they are held back until every page before them has arrived.
+ *
+ * The update callback runs on an OkHttp thread.
+ */
+public class PlaylistTrackLoader {
+    public static final int PAGE_SIZE = 100;
+    private static final int MAX_CONCURRENT_PAGES = 2;
+    // Start fetching the next page when the view is this many tracks from the end
+    private static final int PREFETCH_MARGIN = 30;
+
+    private final SpotifyAPI api;
+    private final String playlistId;
+    private final Runnable onUpdate;
+
+    private final List<SpotifyAPI.PlaylistTrack> tracks = new ArrayList<>();
+    // Pages that arrived before an earlier page, keyed by offset
+    private final Map<Integer, SpotifyAPI.PlaylistTrackPage> heldPages = new HashMap<>();
+    private final Map<Integer, CompletableFuture<SpotifyAPI.PlaylistTrackPage>> inFlight = new HashMap<>();
+
+    // Playlist offset up to which every page has been merged into tracks
+    private int loadedOffset = 0;
+    // Next playlist offset not yet requested
+    private int requestedOffset = 0;
+    private int total = -1;
+    private int wantedIndex = 0;
+    private boolean failed = false;
+    private boolean cancelled = false;
+
+    public PlaylistTrackLoader(SpotifyAPI api, String playlistId, Runnable onUpdate) {
+        this.api = api;
+        this.playlistId = playlistId;
+        this.onUpdate = onUpdate;
+    }
+
+    /**
+     * Request the first page.
+     */
+    public void start() {
+        ensureLoaded(0);
+    }
+
+    /**
+     * Use tracks loaded earlier, every page up to {@code loadedOffset}; later
+     * pages are requested as the view needs them.
+     */
+    public synchronized void startFrom(List<SpotifyAPI.PlaylistTrack> cached, int loadedOffset, int total) {
+        tracks.addAll(cached);
+        this.loadedOffset = this.requestedOffset = loadedOffset;
+        this.total = total;
+    }
+
+    /**
+     * Make sure tracks up to the given index (plus a prefetch margin) are loaded or loading.
+     */
+    public synchronized void ensureLoaded(int index) {
+        wantedIndex = Math.max(wantedIndex, index + PREFETCH_MARGIN);
+        while (!cancelled && !failed && inFlight.size() < MAX_CONCURRENT_PAGES && hasMoreToRequest()
+                && (requestedOffset == 0 || requestedOffset <= wantedIndex)) {
+            // Until the first page tells us the total, only one request makes sense
+            if (total < 0 && requestedOffset > 0) {
+                break;
+            }
+            requestPage(requestedOffset);
+            requestedOffset += PAGE_SIZE;
+        }
+    }
+
+    private boolean hasMoreToRequest() {
+        return total < 0 || requestedOffset < total;
+    }
+
+    private void requestPage(int offset) {
+        CompletableFuture<SpotifyAPI.PlaylistTrackPage> future = api.getPlaylistTracksPage(playlistId, offset, PAGE_SIZE);
+        inFlight.put(offset, future);
+        future.thenAccept(page -> onPage(offset, page));
+    }
+
+    private void onPage(int offset, SpotifyAPI.PlaylistTrackPage page) {
+        synchronized (this) {
+            inFlight.remove(offset);
+            if (cancelled) {
+                return;
+            }
+            if (page == null) {
+                failed = true;
+                LogBuffer.get().warn("Stopped loading playlist " + playlistId + " at offset " + offset);
+            } else {
+                if (total < 0 || !page.hasNext) {
+                    total = page.hasNext ? page.total : Math.min(page.total, offset + PAGE_SIZE);
+                }
+                heldPages.put(offset, page);
+                mergeHeldPages();
+                ensureLoaded(0);
+            }
+        }
+        onUpdate.run();
+    }
+
+    private void mergeHeldPages() {
+        SpotifyAPI.PlaylistTrackPage next;
+        while ((next = heldPages.remove(loadedOffset)) != null) {
+            tracks.addAll(next.tracks);
+            loadedOffset += PAGE_SIZE;
+        }
+        if (isComplete()) {
+            LogBuffer.get().info("Loaded " + tracks.size() + " tracks for playlist: " + playlistId);
+        }
+    }
+
+    /**
+     * Stop loading; pending requests are cancelled and the callback won't run again.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        for (CompletableFuture<SpotifyAPI.PlaylistTrackPage> future : inFlight.values()) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    public synchronized int size() {
+        return tracks.size();
+    }
+
+    public synchronized SpotifyAPI.PlaylistTrack get(int index) {
+        return tracks.get(index);
+    }
+
+    public synchronized List<SpotifyAPI.PlaylistTrack> getTracks() {
+        return new ArrayList<>(tracks);
+    }
+
+    /**
+     * Total items reported by Spotify, or -1 before the first page arrives.
+     * Unavailable items are skipped, so the loaded count can end up lower.
+     */
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    public synchronized boolean isLoading() {
+        return !inFlight.isEmpty();
+    }
+
+    /** Playlist offset up to which every page is in {@link #getTracks()}. */
+    public synchronized int getLoadedOffset() {
+        return loadedOffset;
+    }
+
+    public synchronized boolean isComplete() {
+        return total >= 0 && loadedOffset >= total;
+    }
+
+    public synchronized boolean hasFailed() {
+        return failed;
+    }
+}
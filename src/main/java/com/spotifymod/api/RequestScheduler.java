@@ -0,0 +1,266 @@
+package com.spotifymod.api;
+
+import com.spotifymod.debug.LogBuffer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decides when Web API requests may go out.
+ * Requests spend tokens from a shared bucket; each lane has to leave a reserve
+ * in the bucket for the lanes above it, so background polling runs out of
+ * budget long before the buttons do. Background requests are never queued:
+ * if they can't go right away they are shed, and the next poll tries again.
+ * A 429 empties the bucket and blocks every lane until Retry-After has passed.
+ */
+public class RequestScheduler {
+
+    public enum Priority {
+        /** Playback controls the user is waiting on: play, pause, next, seek, volume, ... */
+        INTERACTIVE,
+        /** Reads a screen is waiting on: search, playlists. */
+        USER,
+        /** Polling the user didn't directly ask for: current track, queue, devices. */
+        BACKGROUND
+    }
+
+    /** Thrown from a response handler when Spotify answers 429. */
+    static class RateLimitedException extends IOException {
+        RateLimitedException(String name) {
+            super(name + " rate limited");
+        }
+    }
+
+    private static final double BUCKET_CAPACITY = 10;
+    private static final double REFILL_PER_SECOND = 3;
+    // Tokens each lane must leave in the bucket, by priority
+    private static final double[] RESERVE = {0, 2, 5};
+    private static final int[] LANE_LIMIT = {16, 32, 0};
+    private static final long DEFAULT_RETRY_AFTER_MS = 5000;
+    private static final int MAX_RATE_LIMIT_RETRIES = 1;
+
+    private final ScheduledExecutorService executor;
+    private final ArrayDeque<Task<?>>[] lanes;
+
+    private double tokens = BUCKET_CAPACITY;
+    private long lastRefill = System.nanoTime();
+    // nanoTime, compare by difference
+    private long blockedUntil = System.nanoTime();
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainAt;
+
+    private final AtomicLong shedRequests = new AtomicLong();
+    private final AtomicLong rateLimitedResponses = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    RequestScheduler(ScheduledExecutorService executor) {
+        this.executor = executor;
+        this.lanes = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    private class Task<T> extends CompletableFuture<T> {
+        final String name;
+        final Priority priority;
+        final T fallback;
+        final Supplier<CompletableFuture<T>> send;
+        int attempts = 0;
+        volatile CompletableFuture<T> inFlight;
+
+        Task(String name, Priority priority, T fallback, Supplier<CompletableFuture<T>> send) {
+            this.name = name;
+            this.priority = priority;
+            this.fallback = fallback;
+            this.send = send;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (RequestScheduler.this) {
+                lanes[priority.ordinal()].remove(this);
+            }
+            CompletableFuture<T> call = inFlight;
+            if (call != null) {
+                call.cancel(true);
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        void dispatch() {
+            if (isDone()) return;
+            attempts++;
+            CompletableFuture<T> call = send.get();
+            inFlight = call;
+            call.whenComplete((value, error) -> {
+                inFlight = null;
+                if (error == null) {
+                    complete(value);
+                } else if (unwrap(error) instanceof RateLimitedException
+                        && priority != Priority.BACKGROUND && attempts <= MAX_RATE_LIMIT_RETRIES) {
+                    // Try once more when the block lifts, ahead of anything queued later
+                    synchronized (RequestScheduler.this) {
+                        lanes[priority.ordinal()].addFirst(this);
+                    }
+                    drain();
+                } else {
+                    complete(fallback);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run the request as soon as the budget allows. The returned future
+     * completes with the fallback if the request is shed or keeps getting
+     * rate limited; cancelling it removes it from the queue or cancels the call.
+     */
+    <T> CompletableFuture<T> submit(String name, Priority priority, T fallback, Supplier<CompletableFuture<T>> send) {
+        Task<T> task = new Task<>(name, priority, fallback, send);
+        boolean sendNow = false;
+        synchronized (this) {
+            refill();
+            ArrayDeque<Task<?>> lane = lanes[priority.ordinal()];
+            if (!hasQueuedAtOrAbove(priority) && tryTake(priority)) {
+                sendNow = true;
+            } else if (lane.size() >= LANE_LIMIT[priority.ordinal()]) {
+                shedRequests.incrementAndGet();
+                LogBuffer.get().trace("Request budget exhausted - " + name + " shed");
+                task.complete(fallback);
+                return task;
+            } else {
+                lane.addLast(task);
+                scheduleDrain();
+            }
+        }
+        if (sendNow) {
+            task.dispatch();
+        }
+        return task;
+    }
+
+    /**
+     * Record a 429. Every lane waits until the Retry-After delay has passed.
+     */
+    void onRateLimited(long retryAfterMs) {
+        long delay = retryAfterMs > 0 ? retryAfterMs : DEFAULT_RETRY_AFTER_MS;
+        rateLimitedResponses.incrementAndGet();
+        LogBuffer.get().warn("Spotify rate limit hit, pausing requests for " + delay + "ms");
+        synchronized (this) {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            if (until - blockedUntil > 0) {
+                blockedUntil = until;
+            }
+            tokens = 0;
+            scheduleDrain();
+        }
+    }
+
+    private void drain() {
+        List<Task<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            scheduledDrain = null;
+            refill();
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Task<?>> lane = lanes[priority.ordinal()];
+                while (!lane.isEmpty() && tryTake(priority)) {
+                    ready.add(lane.pollFirst());
+                }
+                // Lower lanes have bigger reserves; if this one is stuck, so are they
+                if (!lane.isEmpty()) break;
+            }
+            scheduleDrain();
+        }
+        for (Task<?> task : ready) {
+            task.dispatch();
+        }
+    }
+
+    // Must hold the lock
+    private void scheduleDrain() {
+        Priority waiting = null;
+        for (Priority priority : Priority.values()) {
+            if (!lanes[priority.ordinal()].isEmpty()) {
+                waiting = priority;
+                break;
+            }
+        }
+        if (waiting == null) return;
+
+        long now = System.nanoTime();
+        double missing = RESERVE[waiting.ordinal()] + 1 - tokens;
+        long refillAt = now + (missing > 0 ? (long) (missing / REFILL_PER_SECOND * 1_000_000_000L) : 0);
+        long drainAt = blockedUntil - refillAt > 0 ? blockedUntil : refillAt;
+
+        if (scheduledDrain != null && !scheduledDrain.isDone() && scheduledDrainAt - drainAt <= 0) {
+            return;
+        }
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrainAt = drainAt;
+        scheduledDrain = executor.schedule(this::drain, Math.max(0, drainAt - now), TimeUnit.NANOSECONDS);
+    }
+
+    // Must hold the lock
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(BUCKET_CAPACITY, tokens + (now - lastRefill) / 1_000_000_000.0 * REFILL_PER_SECOND);
+        lastRefill = now;
+    }
+
+    // Must hold the lock
+    private boolean tryTake(Priority priority) {
+        if (System.nanoTime() - blockedUntil < 0) return false;
+        if (tokens - 1 < RESERVE[priority.ordinal()]) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    // Must hold the lock
+    private boolean hasQueuedAtOrAbove(Priority priority) {
+        for (int i = 0; i <= priority.ordinal(); i++) {
+            if (!lanes[i].isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    public synchronized int getAvailableTokens() {
+        refill();
+        return (int) tokens;
+    }
+
+    public synchronized int getWaitingCount() {
+        int waiting = 0;
+        for (ArrayDeque<Task<?>> lane : lanes) {
+            waiting += lane.size();
+        }
+        return waiting;
+    }
+
+    public synchronized long getRetryAfterRemainingMs() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(blockedUntil - System.nanoTime()));
+    }
+
+    public long getShedCount() {
+        return shedRequests.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimitedResponses.get();
+    }
+}
@@ -0,0 +1,76 @@
+package com.spotifymod.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Small LRU cache of recent search results, keyed by (query, type).
+ * Besides exact hits it can answer a longer query from a cached shorter one
+ * by filtering locally, which is good enough to show while the real request
+ * for the longer query is still in flight.
+ */
+public class SearchCache {
+    private final Map<String, List<SpotifyAPI.SearchResult>> entries;
+
+    public SearchCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, List<SpotifyAPI.SearchResult>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<SpotifyAPI.SearchResult>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized List<SpotifyAPI.SearchResult> get(String query, String type) {
+        return entries.get(key(normalize(query), type));
+    }
+
+    public synchronized void put(String query, String type, List<SpotifyAPI.SearchResult> results) {
+        entries.put(key(normalize(query), type), results);
+    }
+
+    /**
+     * Results of the longest cached prefix of the query, filtered down to the
+     * ones that still match it. Returns null when no prefix is cached.
+     */
+    public synchronized List<SpotifyAPI.SearchResult> findByPrefix(String query, String type) {
+        String normalized = normalize(query);
+        for (int length = normalized.length() - 1; length > 0; length--) {
+            List<SpotifyAPI.SearchResult> cached = entries.get(key(normalized.substring(0, length), type));
+            if (cached != null) {
+                return filter(cached, normalized);
+            }
+        }
+        return null;
+    }
+
+    private static List<SpotifyAPI.SearchResult> filter(List<SpotifyAPI.SearchResult> results, String query) {
+        String[] words = query.split("\\s+");
+        List<SpotifyAPI.SearchResult> filtered = new ArrayList<>();
+        for (SpotifyAPI.SearchResult result : results) {
+            String text = (result.name + " " + result.artist + " " + result.album).toLowerCase(Locale.ROOT);
+            boolean matches = true;
+            for (String word : words) {
+                if (!text.contains(word)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                filtered.add(result);
+            }
+        }
+        return filtered;
+    }
+
+    private static String normalize(String query) {
+        return query.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String normalizedQuery, String type) {
+        return type + '\n' + normalizedQuery;
+    }
+}
@@ -3,16 +3,27 @@ package com.spotifymod.api;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import com.spotifymod.config.SpotifyConfig;
 import com.spotifymod.debug.LogBuffer;
 import com.spotifymod.user.ProfileManager;
 import com.spotifymod.user.UserProfile;
 import okhttp3.*;
 
-import java.io.IOException;
+import java.io.EOFException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SpotifyAPI {
     private static final String API_BASE = "https://api.spotify.com/v1";
@@ -24,17 +35,46 @@ public class SpotifyAPI {
     private final String CLIENT_ID;
     private final String CLIENT_SECRET;
     private static final String REDIRECT_URI = "http://127.0.0.1:8888/callback";
+    private static final long TOKEN_REFRESH_MARGIN = 5 * 60 * 1000; // refresh 5 minutes before expiry
+    private static final long TOKEN_REFRESH_RETRY = 30 * 1000;
     
-    private final OkHttpClient httpClient;
+    private volatile OkHttpClient httpClient;
     private final SpotifyConfig config;
     private final ProfileManager profileManager;
     private final JsonParser jsonParser;
 
+    // OkHttp's dispatcher runs calls on this pool rather than the common ForkJoinPool
+    private ThreadPoolExecutor ioExecutor;
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    // Token refresh is single-flight: every caller that finds the token expired
+    // shares this future instead of starting its own POST to TOKEN_URL
+    private final AtomicReference<CompletableFuture<Boolean>> refreshInFlight = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledRefresh;
+    private long scheduledForExpiry = -1;
+
+    // Budgets Web API calls and keeps background polling behind user actions
+    private final RequestScheduler requestScheduler;
+
+    // Latest-wins channels for settings the user can change faster than requests complete
+    private final CoalescingCommand<Integer> volumeCommand = new CoalescingCommand<>(this::setVolume);
+    private final CoalescingCommand<Integer> seekCommand = new CoalescingCommand<>(this::seek);
+    private final CoalescingCommand<Boolean> shuffleCommand = new CoalescingCommand<>(this::setShuffle);
+    private final CoalescingCommand<String> repeatCommand = new CoalescingCommand<>(this::setRepeat);
+
     public SpotifyAPI(SpotifyConfig config, ProfileManager profileManager) {
-        this.httpClient = new OkHttpClient();
         this.config = config;
         this.profileManager = profileManager;
         this.jsonParser = new JsonParser();
+        this.httpClient = createHttpClient(new OkHttpClient.Builder());
+        // Lives for the whole client session, so it is not shut down in cleanup()
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SpotifyAPI-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requestScheduler = new RequestScheduler(scheduler);
         
         // Load credentials from config
         SpotifyCredentials credentials = config.loadCredentials();
@@ -42,6 +82,164 @@ public class SpotifyAPI {
         this.CLIENT_SECRET = credentials.getClientSecret();
     }
 
+    private OkHttpClient createHttpClient(OkHttpClient.Builder builder) {
+        int threads = config.getApiThreads();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SpotifyAPI-IO-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        // The dispatcher never runs more than `threads` calls, so this queue only
+        // absorbs the hand-off between one call finishing and the next starting.
+        // Backlog is held (and bounded) in the dispatcher's own ready queue.
+        ioExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads), threadFactory);
+        ioExecutor.allowCoreThreadTimeOut(true);
+
+        Dispatcher dispatcher = new Dispatcher(ioExecutor);
+        dispatcher.setMaxRequests(threads);
+        dispatcher.setMaxRequestsPerHost(threads);
+        return builder.dispatcher(dispatcher).build();
+    }
+
+    private synchronized OkHttpClient getHttpClient() {
+        // cleanup() runs when an integrated server stops; the client keeps going
+        if (ioExecutor.isShutdown()) {
+            httpClient = createHttpClient(httpClient.newBuilder());
+        }
+        return httpClient;
+    }
+
+    /**
+     * Enqueue a request without holding a thread while it is in flight.
+     * When the backlog is full the request is dropped and the fallback returned.
+     */
+    private <T> CompletableFuture<T> enqueue(String name, Request request, T fallback,
+                                             CallFuture.ResponseHandler<T> handler) {
+        OkHttpClient client = getHttpClient();
+        if (client.dispatcher().queuedCallsCount() >= config.getApiQueueLimit()) {
+            rejectedRequests.incrementAndGet();
+            LogBuffer.get().warn("Spotify request queue full - " + name + " dropped");
+            return CompletableFuture.completedFuture(fallback);
+        }
+        Call call = client.newCall(request);
+        CallFuture<T> future = new CallFuture<>(call, name, fallback, handler);
+        call.enqueue(future);
+        return future;
+    }
+
+    /**
+     * Enqueue an authorized Web API request once the request scheduler allows
+     * it and the access token is valid. Cancelling the returned future removes
+     * it from the scheduler or cancels the HTTP call.
+     */
+    private <T> CompletableFuture<T> apiCall(String name, RequestScheduler.Priority priority, Request.Builder builder,
+                                             T fallback, CallFuture.ResponseHandler<T> handler) {
+        CallFuture.ResponseHandler<T> rateLimited = response -> {
+            if (response.code() == 429) {
+                requestScheduler.onRateLimited(parseRetryAfter(response));
+                throw new RequestScheduler.RateLimitedException(name);
+            }
+            return handler.handle(response);
+        };
+        return requestScheduler.submit(name, priority, fallback, () -> sendApiCall(name, builder, fallback, rateLimited));
+    }
+
+    private <T> CompletableFuture<T> sendApiCall(String name, Request.Builder builder, T fallback,
+                                                 CallFuture.ResponseHandler<T> handler) {
+        CompletableFuture<Boolean> token = ensureValidToken();
+        if (token.isDone()) {
+            if (!token.join()) return CompletableFuture.completedFuture(fallback);
+            return enqueue(name, authorize(builder), fallback, handler);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        token.thenAccept(valid -> {
+            if (result.isDone()) return;
+            if (!valid) {
+                result.complete(fallback);
+                return;
+            }
+            CompletableFuture<T> call = enqueue(name, authorize(builder), fallback, handler);
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) call.cancel(true);
+            });
+            call.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        return result;
+    }
+
+    // Retry-After is in seconds; 0 if missing or unreadable
+    private static long parseRetryAfter(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) return 0;
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static JsonReader jsonReader(Response response) {
+        return new JsonReader(response.body().charStream());
+    }
+
+    private Request authorize(Request.Builder builder) {
+        return builder.header("Authorization", "Bearer " + getAccessToken()).build();
+    }
+
+    public int getActiveRequestCount() {
+        return httpClient.dispatcher().runningCallsCount();
+    }
+
+    public int getQueuedRequestCount() {
+        return httpClient.dispatcher().queuedCallsCount();
+    }
+
+    public int getQueueLimit() {
+        return config.getApiQueueLimit();
+    }
+
+    public int getMaxRequestThreads() {
+        return httpClient.dispatcher().getMaxRequests();
+    }
+
+    public long getRejectedRequestCount() {
+        return rejectedRequests.get();
+    }
+
+    public RequestScheduler getRequestScheduler() {
+        return requestScheduler;
+    }
+
+    /** Use these instead of setVolume/seek/setShuffle/setRepeat for input that can repeat quickly. */
+    public CoalescingCommand<Integer> getVolumeCommand() {
+        return volumeCommand;
+    }
+
+    public CoalescingCommand<Integer> getSeekCommand() {
+        return seekCommand;
+    }
+
+    public CoalescingCommand<Boolean> getShuffleCommand() {
+        return shuffleCommand;
+    }
+
+    public CoalescingCommand<String> getRepeatCommand() {
+        return repeatCommand;
+    }
+
     public boolean isAuthenticated() {
         UserProfile profile = profileManager.getActiveProfile();
         return profile != null && profile.hasValidTokens();
@@ -72,89 +270,106 @@ public class SpotifyAPI {
 
     public CompletableFuture<Boolean> authenticate(String authCode) {
         LogBuffer.get().info("Starting authentication exchange");
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                RequestBody body = new FormBody.Builder()
-                        .add("grant_type", "authorization_code")
-                        .add("code", authCode)
-                        .add("redirect_uri", REDIRECT_URI)
-                        .add("client_id", CLIENT_ID)
-                        .add("client_secret", CLIENT_SECRET)
-                        .build();
-
-                Request request = new Request.Builder()
-                        .url(TOKEN_URL)
-                        .post(body)
-                        .build();
-
-                Response response = httpClient.newCall(request).execute();
-                if (response.isSuccessful() && response.body() != null) {
-                    JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                    String accessToken = json.get("access_token").getAsString();
-                    String refreshToken = json.get("refresh_token").getAsString();
-                    int expiresIn = json.get("expires_in").getAsInt();
-                    long tokenExpiresAt = System.currentTimeMillis() + (expiresIn * 1000L);
-
-                    // Save to active profile
-                    UserProfile profile = profileManager.getActiveProfile();
-                    if (profile != null) {
-                        profile.setAccessToken(accessToken);
-                        profile.setRefreshToken(refreshToken);
-                        profile.setTokenExpiresAt(tokenExpiresAt);
-                        profileManager.save();
-                    }
-
-                    LogBuffer.get().info("Authentication success; token expires in " + expiresIn + "s");
-                    return true;
+        RequestBody body = new FormBody.Builder()
+                .add("grant_type", "authorization_code")
+                .add("code", authCode)
+                .add("redirect_uri", REDIRECT_URI)
+                .add("client_id", CLIENT_ID)
+                .add("client_secret", CLIENT_SECRET)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(TOKEN_URL)
+                .post(body)
+                .build();
+
+        return enqueue("Auth", request, false, response -> {
+            if (response.isSuccessful() && response.body() != null) {
+                JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
+                String accessToken = json.get("access_token").getAsString();
+                String refreshToken = json.get("refresh_token").getAsString();
+                int expiresIn = json.get("expires_in").getAsInt();
+                long tokenExpiresAt = System.currentTimeMillis() + (expiresIn * 1000L);
+
+                // Save to active profile
+                UserProfile profile = profileManager.getActiveProfile();
+                if (profile != null) {
+                    profile.setAccessToken(accessToken);
+                    profile.setRefreshToken(refreshToken);
+                    profile.setTokenExpiresAt(tokenExpiresAt);
+                    profileManager.save();
                 }
-            } catch (Exception e) {
-                LogBuffer.get().error("Auth error: " + e.getMessage());
+
+                LogBuffer.get().info("Authentication success; token expires in " + expiresIn + "s");
+                scheduleProactiveRefresh();
+                return true;
             }
             return false;
         });
     }
 
+    /**
+     * Refresh the access token, joining the refresh already in flight if there is one.
+     */
     public CompletableFuture<Boolean> refreshAccessToken() {
+        while (true) {
+            CompletableFuture<Boolean> existing = refreshInFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<Boolean> refresh = new CompletableFuture<>();
+            if (refreshInFlight.compareAndSet(null, refresh)) {
+                requestTokenRefresh().whenComplete((ok, error) -> {
+                    boolean success = ok != null && ok;
+                    refreshInFlight.set(null);
+                    if (success) {
+                        scheduleProactiveRefresh();
+                    } else {
+                        scheduleRefreshRetry();
+                    }
+                    refresh.complete(success);
+                });
+                return refresh;
+            }
+        }
+    }
+
+    private CompletableFuture<Boolean> requestTokenRefresh() {
         String refreshToken = getRefreshToken();
         if (refreshToken == null || refreshToken.isEmpty()) {
             return CompletableFuture.completedFuture(false);
         }
 
         LogBuffer.get().info("Refreshing access token");
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                RequestBody body = new FormBody.Builder()
-                        .add("grant_type", "refresh_token")
-                        .add("refresh_token", refreshToken)
-                        .add("client_id", CLIENT_ID)
-                        .add("client_secret", CLIENT_SECRET)
-                        .build();
-
-                Request request = new Request.Builder()
-                        .url(TOKEN_URL)
-                        .post(body)
-                        .build();
-
-                Response response = httpClient.newCall(request).execute();
-                if (response.isSuccessful() && response.body() != null) {
-                    JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                    String accessToken = json.get("access_token").getAsString();
-                    int expiresIn = json.get("expires_in").getAsInt();
-                    long tokenExpiresAt = System.currentTimeMillis() + (expiresIn * 1000L);
-
-                    // Save to active profile
-                    UserProfile profile = profileManager.getActiveProfile();
-                    if (profile != null) {
-                        profile.setAccessToken(accessToken);
-                        profile.setTokenExpiresAt(tokenExpiresAt);
-                        profileManager.save();
-                    }
-
-                    LogBuffer.get().info("Token refreshed; new expiry " + expiresIn + "s");
-                    return true;
+        RequestBody body = new FormBody.Builder()
+                .add("grant_type", "refresh_token")
+                .add("refresh_token", refreshToken)
+                .add("client_id", CLIENT_ID)
+                .add("client_secret", CLIENT_SECRET)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(TOKEN_URL)
+                .post(body)
+                .build();
+
+        return enqueue("Refresh", request, false, response -> {
+            if (response.isSuccessful() && response.body() != null) {
+                JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
+                String accessToken = json.get("access_token").getAsString();
+                int expiresIn = json.get("expires_in").getAsInt();
+                long tokenExpiresAt = System.currentTimeMillis() + (expiresIn * 1000L);
+
+                // Save to active profile
+                UserProfile profile = profileManager.getActiveProfile();
+                if (profile != null) {
+                    profile.setAccessToken(accessToken);
+                    profile.setTokenExpiresAt(tokenExpiresAt);
+                    profileManager.save();
                 }
-            } catch (Exception e) {
-                LogBuffer.get().error("Refresh error: " + e.getMessage());
+
+                LogBuffer.get().info("Token refreshed; new expiry " + expiresIn + "s");
+                return true;
             }
             return false;
         });
@@ -164,62 +379,82 @@ public class SpotifyAPI {
         if (isTokenExpired()) {
             return refreshAccessToken();
         }
+        // Picks up new logins and profile switches; no-op when already scheduled
+        scheduleProactiveRefresh();
         return CompletableFuture.completedFuture(true);
     }
 
-    public CompletableFuture<TrackInfo> getCurrentTrack() {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(null);
+    /**
+     * Schedule a background refresh ahead of the active profile's token expiry,
+     * so user-facing requests never wait on the token round trip.
+     */
+    private synchronized void scheduleProactiveRefresh() {
+        UserProfile profile = profileManager.getActiveProfile();
+        if (profile == null || !profile.hasValidTokens()) {
+            return;
+        }
+        long expiresAt = profile.getTokenExpiresAt();
+        if (expiresAt == scheduledForExpiry) {
+            return;
+        }
+        scheduledForExpiry = expiresAt;
+        long delay = Math.max(0, expiresAt - TOKEN_REFRESH_MARGIN - System.currentTimeMillis());
+        scheduleRefresh(delay);
+        LogBuffer.get().trace("Token refresh scheduled in " + (delay / 1000) + "s");
+    }
 
-            return CompletableFuture.supplyAsync(() -> {
+    private synchronized void scheduleRefreshRetry() {
+        if (isAuthenticated()) {
+            scheduleRefresh(TOKEN_REFRESH_RETRY);
+        }
+    }
+
+    private synchronized void scheduleRefresh(long delayMs) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(() -> {
+            if (isAuthenticated()) {
+                refreshAccessToken();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<TrackInfo> getCurrentTrack() {
+        return getCurrentTrack(null);
+    }
+
+    /**
+     * Like {@link #getCurrentTrack()}, but completes with {@code unavailable} instead of
+     * null when the request fails or is shed, so callers can tell that apart from
+     * nothing playing.
+     */
+    public CompletableFuture<TrackInfo> getCurrentTrack(TrackInfo unavailable) {
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/currently-playing");
+
+        return apiCall("getCurrentTrack", RequestScheduler.Priority.BACKGROUND, request, unavailable, response -> {
+            if (response.code() == 204) {
+                // 204 = No Content - no active playback
+                LogBuffer.get().trace("getCurrentTrack: No active playback");
+                return null;
+            }
+            if (response.isSuccessful() && response.body() != null) {
+                JsonReader reader = jsonReader(response);
                 try {
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/currently-playing")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    if (response.code() == 204) {
-                        // 204 = No Content - no active playback
-                        LogBuffer.get().trace("getCurrentTrack: No active playback");
-                        return null;
-                    }
-                    if (response.isSuccessful() && response.body() != null) {
-                        String responseBody = response.body().string();
-                        if (responseBody.isEmpty()) {
-                            LogBuffer.get().trace("getCurrentTrack: Empty response");
-                            return null;
-                        }
-
-                        JsonObject json = jsonParser.parse(responseBody).getAsJsonObject();
-                        return parseTrackInfo(json);
-                    } else {
-                        LogBuffer.get().warn("getCurrentTrack failed: " + response.code());
-                    }
-                } catch (Exception e) {
-                    LogBuffer.get().error("getCurrentTrack error: " + e.getMessage());
+                    reader.peek();
+                } catch (EOFException e) {
+                    LogBuffer.get().trace("getCurrentTrack: Empty response");
+                    return null;
                 }
-                return null;
-            });
+                return SpotifyJsonDecoder.decodeCurrentlyPlaying(reader);
+            } else {
+                LogBuffer.get().warn("getCurrentTrack failed: " + response.code());
+            }
+            return unavailable;
         });
     }
 
-    private TrackInfo parseTrackInfo(JsonObject json) {
-        try {
-            JsonObject item = json.getAsJsonObject("item");
-            String trackName = item.get("name").getAsString();
-            String artist = item.getAsJsonArray("artists").get(0).getAsJsonObject().get("name").getAsString();
-            String album = item.getAsJsonObject("album").get("name").getAsString();
-            int durationMs = item.get("duration_ms").getAsInt();
-            int progressMs = json.get("progress_ms").getAsInt();
-            boolean isPlaying = json.get("is_playing").getAsBoolean();
-
-            return new TrackInfo(trackName, artist, album, durationMs, progressMs, isPlaying);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
 
     public CompletableFuture<Boolean> play() {
         return playerControl("play", "PUT", null);
@@ -244,340 +479,198 @@ public class SpotifyAPI {
     }
 
     public CompletableFuture<List<Device>> getAvailableDevices() {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(new ArrayList<>());
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/devices")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    if (response.isSuccessful() && response.body() != null) {
-                        JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                        List<Device> devices = new ArrayList<>();
-                        JsonArray devicesArray = json.getAsJsonArray("devices");
-                        for (int i = 0; i < devicesArray.size(); i++) {
-                            JsonObject deviceObj = devicesArray.get(i).getAsJsonObject();
-                            String id = deviceObj.get("id").getAsString();
-                            String name = deviceObj.get("name").getAsString();
-                            String type = deviceObj.get("type").getAsString();
-                            boolean isActive = deviceObj.get("is_active").getAsBoolean();
-                            devices.add(new Device(id, name, type, isActive));
-                        }
-                        LogBuffer.get().info("Found " + devices.size() + " devices");
-                        return devices;
-                    }
-                } catch (Exception e) {
-                    LogBuffer.get().error("getAvailableDevices error: " + e.getMessage());
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/devices");
+
+        return apiCall("getAvailableDevices", RequestScheduler.Priority.BACKGROUND, request, new ArrayList<>(), response -> {
+            List<Device> devices = new ArrayList<>();
+            if (response.isSuccessful() && response.body() != null) {
+                JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
+                JsonArray devicesArray = json.getAsJsonArray("devices");
+                for (int i = 0; i < devicesArray.size(); i++) {
+                    JsonObject deviceObj = devicesArray.get(i).getAsJsonObject();
+                    String id = deviceObj.get("id").getAsString();
+                    String name = deviceObj.get("name").getAsString();
+                    String type = deviceObj.get("type").getAsString();
+                    boolean isActive = deviceObj.get("is_active").getAsBoolean();
+                    devices.add(new Device(id, name, type, isActive));
                 }
-                return new ArrayList<>();
-            });
+                LogBuffer.get().info("Found " + devices.size() + " devices");
+            }
+            return devices;
         });
     }
 
     public CompletableFuture<Boolean> transferPlayback(String deviceId) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    String jsonBody = "{\"device_ids\":[\"" + deviceId + "\"],\"play\":true}";
-                    RequestBody body = RequestBody.create(
-                            MediaType.parse("application/json"), 
-                            jsonBody
-                    );
-
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .put(body)
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    boolean ok = response.isSuccessful() || response.code() == 202;
-                    LogBuffer.get().info("transferPlayback deviceId=" + deviceId + " -> " + ok);
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("transferPlayback error: " + e.getMessage());
-                    return false;
-                }
-            });
+        String jsonBody = "{\"device_ids\":[\"" + deviceId + "\"],\"play\":true}";
+        RequestBody body = RequestBody.create(
+                MediaType.parse("application/json"), 
+                jsonBody
+        );
+
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player")
+                .put(body);
+
+        return apiCall("transferPlayback", RequestScheduler.Priority.INTERACTIVE, request, false, response -> {
+            boolean ok = response.isSuccessful() || response.code() == 202;
+            LogBuffer.get().info("transferPlayback deviceId=" + deviceId + " -> " + ok);
+            return ok;
         });
     }
 
     public CompletableFuture<List<Playlist>> getUserPlaylists() {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(new ArrayList<>());
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/playlists?limit=50")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    if (response.isSuccessful() && response.body() != null) {
-                        JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                        return parsePlaylistsFromJson(json);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                return new ArrayList<>();
-            });
-        });
-    }
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/playlists?limit=50");
 
-    private List<Playlist> parsePlaylistsFromJson(JsonObject json) {
-        List<Playlist> playlists = new ArrayList<>();
-        try {
-            JsonArray items = json.getAsJsonArray("items");
-            for (int i = 0; i < items.size(); i++) {
-                JsonObject item = items.get(i).getAsJsonObject();
-                String id = item.get("id").getAsString();
-                String name = item.get("name").getAsString();
-                String uri = item.get("uri").getAsString();
-                int trackCount = item.getAsJsonObject("tracks").get("total").getAsInt();
-                playlists.add(new Playlist(id, name, uri, trackCount));
+        return apiCall("getUserPlaylists", RequestScheduler.Priority.USER, request, new ArrayList<>(), response -> {
+            if (response.isSuccessful() && response.body() != null) {
+                return SpotifyJsonDecoder.decodePlaylists(jsonReader(response));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return playlists;
+            return new ArrayList<>();
+        });
     }
 
     public CompletableFuture<Boolean> playPlaylist(String playlistUri) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    String jsonBody = "{\"context_uri\":\"" + playlistUri + "\"}";
-                    RequestBody body = RequestBody.create(
-                            MediaType.parse("application/json"), 
-                            jsonBody
-                    );
-
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/play")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .put(body)
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    boolean ok = response.isSuccessful();
-                    if (!ok && response.body() != null) {
-                        String errorBody = response.body().string();
-                        LogBuffer.get().error("playPlaylist failed: " + response.code() + " - " + errorBody);
-                        // Check for common errors
-                        if (response.code() == 404) {
-                            LogBuffer.get().error("No active device found. Open Spotify on a device first!");
-                        }
-                    } else {
-                        LogBuffer.get().info("playPlaylist contextUri=" + playlistUri + " -> success");
-                    }
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("playPlaylist error: " + e.getMessage());
-                    return false;
+        String jsonBody = "{\"context_uri\":\"" + playlistUri + "\"}";
+        RequestBody body = RequestBody.create(
+                MediaType.parse("application/json"), 
+                jsonBody
+        );
+
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/play")
+                .put(body);
+
+        return apiCall("playPlaylist", RequestScheduler.Priority.INTERACTIVE, request, false, response -> {
+            boolean ok = response.isSuccessful();
+            if (!ok && response.body() != null) {
+                String errorBody = response.body().string();
+                LogBuffer.get().error("playPlaylist failed: " + response.code() + " - " + errorBody);
+                // Check for common errors
+                if (response.code() == 404) {
+                    LogBuffer.get().error("No active device found. Open Spotify on a device first!");
                 }
-            });
+            } else {
+                LogBuffer.get().info("playPlaylist contextUri=" + playlistUri + " -> success");
+            }
+            return ok;
         });
     }
 
-    public CompletableFuture<List<PlaylistTrack>> getPlaylistTracks(String playlistId) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(new ArrayList<>());
+    /**
+     * One page of a playlist's tracks, or null if the request failed.
+     * Use {@link PlaylistTrackLoader} to load a whole playlist.
+     */
+    public CompletableFuture<PlaylistTrackPage> getPlaylistTracksPage(String playlistId, int offset, int limit) {
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/playlists/" + playlistId + "/tracks?offset=" + offset + "&limit=" + limit);
 
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/playlists/" + playlistId + "/tracks?limit=100")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    if (response.isSuccessful() && response.body() != null) {
-                        JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                        return parsePlaylistTracksFromJson(json);
-                    }
-                } catch (Exception e) {
-                    LogBuffer.get().error("getPlaylistTracks error: " + e.getMessage());
-                }
-                return new ArrayList<>();
-            });
-        });
-    }
-
-    private List<PlaylistTrack> parsePlaylistTracksFromJson(JsonObject json) {
-        List<PlaylistTrack> tracks = new ArrayList<>();
-        try {
-            JsonArray items = json.getAsJsonArray("items");
-            for (int i = 0; i < items.size(); i++) {
-                JsonObject item = items.get(i).getAsJsonObject();
-                if (!item.has("track")) continue;
-                
-                JsonObject track = item.getAsJsonObject("track");
-                if (track.isJsonNull()) continue;
-                
-                String uri = track.get("uri").getAsString();
-                String name = track.get("name").getAsString();
-                String artist = track.getAsJsonArray("artists").get(0).getAsJsonObject().get("name").getAsString();
-                int durationMs = track.get("duration_ms").getAsInt();
-                
-                tracks.add(new PlaylistTrack(uri, name, artist, durationMs));
+        return apiCall("getPlaylistTracks", RequestScheduler.Priority.USER, request, null, response -> {
+            if (response.isSuccessful() && response.body() != null) {
+                return SpotifyJsonDecoder.decodePlaylistTracks(jsonReader(response));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return tracks;
+            LogBuffer.get().warn("getPlaylistTracks failed: " + response.code());
+            return null;
+        });
     }
 
     public CompletableFuture<Boolean> playTrackFromPlaylist(String playlistUri, String trackUri) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    String jsonBody = "{\"context_uri\":\"" + playlistUri + "\",\"offset\":{\"uri\":\"" + trackUri + "\"}}";
-                    RequestBody body = RequestBody.create(
-                            MediaType.parse("application/json"), 
-                            jsonBody
-                    );
-
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/play")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .put(body)
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    boolean ok = response.isSuccessful();
-                    if (!ok) {
-                        if (response.code() == 404) {
-                            LogBuffer.get().error("playTrackFromPlaylist: No active device");
-                        } else if (response.body() != null) {
-                            LogBuffer.get().error("playTrackFromPlaylist failed: " + response.code() + " - " + response.body().string());
-                        }
-                    } else {
-                        LogBuffer.get().info("playTrackFromPlaylist: success");
-                    }
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("playTrackFromPlaylist error: " + e.getMessage());
-                    return false;
+        String jsonBody = "{\"context_uri\":\"" + playlistUri + "\",\"offset\":{\"uri\":\"" + trackUri + "\"}}";
+        RequestBody body = RequestBody.create(
+                MediaType.parse("application/json"), 
+                jsonBody
+        );
+
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/play")
+                .put(body);
+
+        return apiCall("playTrackFromPlaylist", RequestScheduler.Priority.INTERACTIVE, request, false, response -> {
+            boolean ok = response.isSuccessful();
+            if (!ok) {
+                if (response.code() == 404) {
+                    LogBuffer.get().error("playTrackFromPlaylist: No active device");
+                } else if (response.body() != null) {
+                    LogBuffer.get().error("playTrackFromPlaylist failed: " + response.code() + " - " + response.body().string());
                 }
-            });
+            } else {
+                LogBuffer.get().info("playTrackFromPlaylist: success");
+            }
+            return ok;
         });
     }
     
     public CompletableFuture<Boolean> playTrack(String trackUri) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    String jsonBody = "{\"uris\":[\"" + trackUri + "\"]}";
-                    RequestBody body = RequestBody.create(
-                            MediaType.parse("application/json"), 
-                            jsonBody
-                    );
-
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/play")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .put(body)
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    boolean ok = response.isSuccessful();
-                    if (!ok && response.body() != null) {
-                        LogBuffer.get().error("playTrack failed: " + response.body().string());
-                    }
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("playTrack error: " + e.getMessage());
-                    return false;
-                }
-            });
+        String jsonBody = "{\"uris\":[\"" + trackUri + "\"]}";
+        RequestBody body = RequestBody.create(
+                MediaType.parse("application/json"), 
+                jsonBody
+        );
+
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/play")
+                .put(body);
+
+        return apiCall("playTrack", RequestScheduler.Priority.INTERACTIVE, request, false, response -> {
+            boolean ok = response.isSuccessful();
+            if (!ok && response.body() != null) {
+                LogBuffer.get().error("playTrack failed: " + response.body().string());
+            }
+            return ok;
         });
     }
     
     public CompletableFuture<Boolean> playArtist(String artistUri) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    String jsonBody = "{\"context_uri\":\"" + artistUri + "\"}";
-                    RequestBody body = RequestBody.create(
-                            MediaType.parse("application/json"), 
-                            jsonBody
-                    );
-
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/play")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .put(body)
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    boolean ok = response.isSuccessful();
-                    if (!ok && response.body() != null) {
-                        LogBuffer.get().error("playArtist failed: " + response.body().string());
-                    }
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("playArtist error: " + e.getMessage());
-                    return false;
-                }
-            });
+        String jsonBody = "{\"context_uri\":\"" + artistUri + "\"}";
+        RequestBody body = RequestBody.create(
+                MediaType.parse("application/json"), 
+                jsonBody
+        );
+
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/play")
+                .put(body);
+
+        return apiCall("playArtist", RequestScheduler.Priority.INTERACTIVE, request, false, response -> {
+            boolean ok = response.isSuccessful();
+            if (!ok && response.body() != null) {
+                LogBuffer.get().error("playArtist failed: " + response.body().string());
+            }
+            return ok;
         });
     }
 
     private CompletableFuture<Boolean> playerControl(String endpoint, String method, RequestBody body) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
+        Request.Builder builder = new Request.Builder()
+                .url(API_BASE + "/me/player/" + endpoint);
 
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    Request.Builder builder = new Request.Builder()
-                            .url(API_BASE + "/me/player/" + endpoint)
-                            .addHeader("Authorization", "Bearer " + getAccessToken());
-
-                    if (method.equals("PUT")) {
-                        builder.put(body != null ? body : RequestBody.create(null, new byte[0]));
-                    } else if (method.equals("POST")) {
-                        builder.post(body != null ? body : RequestBody.create(null, new byte[0]));
-                    }
+        if (method.equals("PUT")) {
+            builder.put(body != null ? body : RequestBody.create(null, new byte[0]));
+        } else if (method.equals("POST")) {
+            builder.post(body != null ? body : RequestBody.create(null, new byte[0]));
+        }
 
-                    Response response = httpClient.newCall(builder.build()).execute();
-                    boolean ok = response.isSuccessful();
-                    if (!ok) {
-                        if (response.code() == 404) {
-                            LogBuffer.get().error("playerControl failed: No active device. Open Spotify on a device!");
-                        } else if (response.body() != null) {
-                            LogBuffer.get().error("playerControl " + endpoint + " failed: " + response.code() + " - " + response.body().string());
-                        } else {
-                            LogBuffer.get().error("playerControl " + endpoint + " failed: " + response.code());
-                        }
-                    } else {
-                        LogBuffer.get().trace("playerControl " + endpoint + " method=" + method + " -> success");
-                    }
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("playerControl error: " + e.getMessage());
-                    return false;
+        return apiCall("playerControl " + endpoint, RequestScheduler.Priority.INTERACTIVE, builder, false, response -> {
+            boolean ok = response.isSuccessful();
+            if (!ok) {
+                if (response.code() == 404) {
+                    LogBuffer.get().error("playerControl failed: No active device. Open Spotify on a device!");
+                } else if (response.body() != null) {
+                    LogBuffer.get().error("playerControl " + endpoint + " failed: " + response.code() + " - " + response.body().string());
+                } else {
+                    LogBuffer.get().error("playerControl " + endpoint + " failed: " + response.code());
                 }
-            });
+            } else {
+                LogBuffer.get().trace("playerControl " + endpoint + " method=" + method + " -> success");
+            }
+            return ok;
         });
     }
 
     public static class TrackInfo {
+        public final String id;
+        public final String uri;
         public final String name;
         public final String artist;
         public final String album;
@@ -585,7 +678,9 @@ public class SpotifyAPI {
         public final int progressMs;
         public final boolean isPlaying;
 
-        public TrackInfo(String name, String artist, String album, int durationMs, int progressMs, boolean isPlaying) {
+        public TrackInfo(String id, String uri, String name, String artist, String album, int durationMs, int progressMs, boolean isPlaying) {
+            this.id = id;
+            this.uri = uri;
             this.name = name;
             this.artist = artist;
             this.album = album;
@@ -595,7 +690,27 @@ public class SpotifyAPI {
         }
 
         public String getProgressString() {
-            return formatTime(progressMs) + " / " + formatTime(durationMs);
+            return getProgressString(progressMs);
+        }
+
+        public String getProgressString(int positionMs) {
+            return formatTime(positionMs) + " / " + formatTime(durationMs);
+        }
+
+        public TrackInfo withPlayState(boolean isPlaying, int progressMs) {
+            return new TrackInfo(id, uri, name, artist, album, durationMs, progressMs, isPlaying);
+        }
+
+        /**
+         * Whether this is the same track as another, by URI when both have one
+         * (local files don't), otherwise by name and artist.
+         */
+        public boolean isSameTrack(TrackInfo other) {
+            if (other == null) return false;
+            if (uri != null && other.uri != null) {
+                return uri.equals(other.uri);
+            }
+            return name.equals(other.name) && artist.equals(other.artist);
         }
 
         private String formatTime(int ms) {
@@ -611,12 +726,15 @@ public class SpotifyAPI {
         public final String name;
         public final String uri;
         public final int trackCount;
+        /** Changes whenever the playlist's contents change; may be null. */
+        public final String snapshotId;
 
-        public Playlist(String id, String name, String uri, int trackCount) {
+        public Playlist(String id, String name, String uri, int trackCount, String snapshotId) {
             this.id = id;
             this.name = name;
             this.uri = uri;
             this.trackCount = trackCount;
+            this.snapshotId = snapshotId;
         }
     }
 
@@ -641,6 +759,21 @@ public class SpotifyAPI {
         }
     }
 
+    public static class PlaylistTrackPage {
+        public final List<PlaylistTrack> tracks;
+        public final int offset;
+        /** Total number of items in the playlist, including unavailable ones. */
+        public final int total;
+        public final boolean hasNext;
+
+        public PlaylistTrackPage(List<PlaylistTrack> tracks, int offset, int total, boolean hasNext) {
+            this.tracks = tracks;
+            this.offset = offset;
+            this.total = total;
+            this.hasNext = hasNext;
+        }
+    }
+
     public static class Device {
         public final String id;
         public final String name;
@@ -656,46 +789,18 @@ public class SpotifyAPI {
     }
     
     public CompletableFuture<List<QueueTrack>> getQueue() {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(new ArrayList<>());
-
-            return CompletableFuture.supplyAsync(() -> {
-                List<QueueTrack> queue = new ArrayList<>();
-                try {
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/queue")
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .get()
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    if (response.isSuccessful() && response.body() != null) {
-                        JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                        
-                        // Get queue items
-                        if (json.has("queue")) {
-                            JsonArray queueArray = json.getAsJsonArray("queue");
-                            // Only get first 5 tracks
-                            int limit = Math.min(5, queueArray.size());
-                            for (int i = 0; i < limit; i++) {
-                                JsonObject track = queueArray.get(i).getAsJsonObject();
-                                String name = track.get("name").getAsString();
-                                String artist = track.getAsJsonArray("artists").get(0).getAsJsonObject().get("name").getAsString();
-                                String album = track.getAsJsonObject("album").get("name").getAsString();
-                                int durationMs = track.get("duration_ms").getAsInt();
-                                
-                                queue.add(new QueueTrack(name, artist, album, durationMs));
-                            }
-                        }
-                        
-                        LogBuffer.get().info("Queue has " + queue.size() + " tracks");
-                    }
-                } catch (Exception e) {
-                    LogBuffer.get().error("getQueue error: " + e.getMessage());
-                    e.printStackTrace();
-                }
-                return queue;
-            });
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/queue")
+                .get();
+
+        return apiCall("getQueue", RequestScheduler.Priority.BACKGROUND, request, new ArrayList<>(), response -> {
+            List<QueueTrack> queue = new ArrayList<>();
+            if (response.isSuccessful() && response.body() != null) {
+                // Only get first 5 tracks
+                queue = SpotifyJsonDecoder.decodeQueue(jsonReader(response), 5);
+                LogBuffer.get().info("Queue has " + queue.size() + " tracks");
+            }
+            return queue;
         });
     }
     
@@ -721,88 +826,42 @@ public class SpotifyAPI {
     }
     
     public CompletableFuture<List<SearchResult>> search(String query, String type) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(new ArrayList<>());
+        String url;
+        try {
+            url = API_BASE + "/search?q=" + java.net.URLEncoder.encode(query, "UTF-8") + 
+                        "&type=" + type + "&limit=20";
+        } catch (java.io.UnsupportedEncodingException e) {
+            LogBuffer.get().error("Search error: " + e.getMessage());
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
 
-            return CompletableFuture.supplyAsync(() -> {
-                List<SearchResult> results = new ArrayList<>();
-                try {
-                    String url = API_BASE + "/search?q=" + java.net.URLEncoder.encode(query, "UTF-8") + 
-                                "&type=" + type + "&limit=20";
-                    
-                    Request request = new Request.Builder()
-                            .url(url)
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .get()
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    if (response.isSuccessful() && response.body() != null) {
-                        JsonObject json = jsonParser.parse(response.body().string()).getAsJsonObject();
-                        
-                        // Parse tracks
-                        if (json.has("tracks")) {
-                            JsonArray tracks = json.getAsJsonObject("tracks").getAsJsonArray("items");
-                            for (int i = 0; i < tracks.size(); i++) {
-                                JsonObject track = tracks.get(i).getAsJsonObject();
-                                String name = track.get("name").getAsString();
-                                String artist = track.getAsJsonArray("artists").get(0).getAsJsonObject().get("name").getAsString();
-                                String uri = track.get("uri").getAsString();
-                                String album = track.getAsJsonObject("album").get("name").getAsString();
-                                int durationMs = track.get("duration_ms").getAsInt();
-                                
-                                results.add(new SearchResult(name, artist, album, uri, durationMs, "track"));
-                            }
-                        }
-                        
-                        // Parse artists
-                        if (json.has("artists")) {
-                            JsonArray artists = json.getAsJsonObject("artists").getAsJsonArray("items");
-                            for (int i = 0; i < artists.size(); i++) {
-                                JsonObject artist = artists.get(i).getAsJsonObject();
-                                String name = artist.get("name").getAsString();
-                                String uri = artist.get("uri").getAsString();
-                                
-                                results.add(new SearchResult(name, "", "", uri, 0, "artist"));
-                            }
-                        }
-                        
-                        LogBuffer.get().info("Search found " + results.size() + " results");
-                    }
-                } catch (Exception e) {
-                    LogBuffer.get().error("Search error: " + e.getMessage());
-                    e.printStackTrace();
-                }
-                return results;
-            });
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .get();
+
+        return apiCall("Search", RequestScheduler.Priority.USER, request, new ArrayList<>(), response -> {
+            List<SearchResult> results = new ArrayList<>();
+            if (response.isSuccessful() && response.body() != null) {
+                results = SpotifyJsonDecoder.decodeSearch(jsonReader(response));
+                LogBuffer.get().info("Search found " + results.size() + " results");
+            }
+            return results;
         });
     }
     
     public CompletableFuture<Boolean> seek(int positionMs) {
-        return ensureValidToken().thenCompose(valid -> {
-            if (!valid) return CompletableFuture.completedFuture(false);
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    Request request = new Request.Builder()
-                            .url(API_BASE + "/me/player/seek?position_ms=" + positionMs)
-                            .addHeader("Authorization", "Bearer " + getAccessToken())
-                            .put(RequestBody.create(null, new byte[0]))
-                            .build();
-
-                    Response response = httpClient.newCall(request).execute();
-                    boolean ok = response.isSuccessful();
-                    if (ok) {
-                        LogBuffer.get().info("Seeked to position: " + positionMs + "ms");
-                    } else {
-                        LogBuffer.get().error("Seek failed: " + response.code());
-                    }
-                    return ok;
-                } catch (Exception e) {
-                    LogBuffer.get().error("Seek error: " + e.getMessage());
-                    return false;
-                }
-            });
+        Request.Builder request = new Request.Builder()
+                .url(API_BASE + "/me/player/seek?position_ms=" + positionMs)
+                .put(RequestBody.create(null, new byte[0]));
+
+        return apiCall("Seek", RequestScheduler.Priority.INTERACTIVE, request, false, response -> {
+            boolean ok = response.isSuccessful();
+            if (ok) {
+                LogBuffer.get().info("Seeked to position: " + positionMs + "ms");
+            } else {
+                LogBuffer.get().error("Seek failed: " + response.code());
+            }
+            return ok;
         });
     }
     
@@ -841,10 +900,11 @@ public class SpotifyAPI {
     }
     
     public void cleanup() {
-        // Shutdown HTTP client connection pool
-        if (httpClient != null) {
+        // Shutdown HTTP client dispatcher and connection pool
+        synchronized (this) {
             try {
-                httpClient.dispatcher().executorService().shutdown();
+                httpClient.dispatcher().cancelAll();
+                ioExecutor.shutdown();
                 httpClient.connectionPool().evictAll();
                 LogBuffer.get().info("HTTP client cleaned up - connections closed");
             } catch (Exception e) {
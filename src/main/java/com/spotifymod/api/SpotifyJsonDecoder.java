@@ -0,0 +1,344 @@
+package com.spotifymod.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoders for Spotify Web API responses.
+ * Reads straight off the response body and builds the result objects
+ * directly, skipping the subtrees we never use (markets, images,
+ * external_urls, ...) instead of materialising them as a JsonObject tree.
+ */
+public final class SpotifyJsonDecoder {
+
+    private SpotifyJsonDecoder() {
+    }
+
+    /**
+     * The handful of track fields we use, shared by every endpoint that returns track objects.
+     */
+    private static final class TrackFields {
+        String id;
+        String uri;
+        String name;
+        String artist = "";
+        String album = "";
+        int durationMs;
+    }
+
+    /** GET /me/player/currently-playing */
+    public static SpotifyAPI.TrackInfo decodeCurrentlyPlaying(JsonReader in) throws IOException {
+        TrackFields item = null;
+        int progressMs = 0;
+        boolean isPlaying = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("item")) {
+                item = readTrackOrNull(in);
+            } else if (field.equals("progress_ms") && in.peek() != JsonToken.NULL) {
+                progressMs = in.nextInt();
+            } else if (field.equals("is_playing")) {
+                isPlaying = in.nextBoolean();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (item == null || item.name == null) {
+            return null;
+        }
+        return new SpotifyAPI.TrackInfo(item.id, item.uri, item.name, item.artist, item.album,
+                item.durationMs, progressMs, isPlaying);
+    }
+
+    /** GET /me/playlists */
+    public static List<SpotifyAPI.Playlist> decodePlaylists(JsonReader in) throws IOException {
+        List<SpotifyAPI.Playlist> playlists = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("items")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    SpotifyAPI.Playlist playlist = readPlaylist(in);
+                    if (playlist != null) {
+                        playlists.add(playlist);
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return playlists;
+    }
+
+    /** GET /playlists/{id}/tracks */
+    public static SpotifyAPI.PlaylistTrackPage decodePlaylistTracks(JsonReader in) throws IOException {
+        List<SpotifyAPI.PlaylistTrack> tracks = new ArrayList<>();
+        int offset = 0;
+        int total = 0;
+        boolean hasNext = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("offset")) {
+                offset = in.nextInt();
+            } else if (field.equals("total")) {
+                total = in.nextInt();
+            } else if (field.equals("next")) {
+                hasNext = nextStringOrNull(in) != null;
+            } else if (field.equals("items")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    TrackFields track = readPlaylistItem(in);
+                    if (track != null && track.uri != null && track.name != null) {
+                        tracks.add(new SpotifyAPI.PlaylistTrack(track.uri, track.name, track.artist, track.durationMs));
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new SpotifyAPI.PlaylistTrackPage(tracks, offset, total, hasNext);
+    }
+
+    /** GET /search with type track, artist or both */
+    public static List<SpotifyAPI.SearchResult> decodeSearch(JsonReader in) throws IOException {
+        List<SpotifyAPI.SearchResult> tracks = new ArrayList<>();
+        List<SpotifyAPI.SearchResult> artists = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("tracks")) {
+                readItems(in, () -> {
+                    TrackFields track = readTrackOrNull(in);
+                    if (track != null && track.name != null && track.uri != null) {
+                        tracks.add(new SpotifyAPI.SearchResult(track.name, track.artist, track.album,
+                                track.uri, track.durationMs, "track"));
+                    }
+                });
+            } else if (field.equals("artists")) {
+                readItems(in, () -> {
+                    String[] nameAndUri = readNameAndUri(in);
+                    if (nameAndUri[0] != null && nameAndUri[1] != null) {
+                        artists.add(new SpotifyAPI.SearchResult(nameAndUri[0], "", "", nameAndUri[1], 0, "artist"));
+                    }
+                });
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        // Tracks first, then artists, whatever order the fields arrive in
+        tracks.addAll(artists);
+        return tracks;
+    }
+
+    /** GET /me/player/queue, keeping only the first {@code limit} upcoming tracks */
+    public static List<SpotifyAPI.QueueTrack> decodeQueue(JsonReader in, int limit) throws IOException {
+        List<SpotifyAPI.QueueTrack> queue = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("queue")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (queue.size() >= limit) {
+                        in.skipValue();
+                        continue;
+                    }
+                    TrackFields track = readTrackOrNull(in);
+                    if (track != null && track.name != null) {
+                        queue.add(new SpotifyAPI.QueueTrack(track.name, track.artist, track.album, track.durationMs));
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return queue;
+    }
+
+    private interface ItemReader {
+        void read() throws IOException;
+    }
+
+    // Reads a paging object ({"items": [...], "next": ..., ...}), calling the reader for each item
+    private static void readItems(JsonReader in, ItemReader itemReader) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("items")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    itemReader.read();
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private static SpotifyAPI.Playlist readPlaylist(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String id = null;
+        String name = null;
+        String uri = null;
+        String snapshotId = null;
+        int trackCount = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("id")) {
+                id = nextStringOrNull(in);
+            } else if (field.equals("name")) {
+                name = nextStringOrNull(in);
+            } else if (field.equals("uri")) {
+                uri = nextStringOrNull(in);
+            } else if (field.equals("snapshot_id")) {
+                snapshotId = nextStringOrNull(in);
+            } else if (field.equals("tracks") && in.peek() == JsonToken.BEGIN_OBJECT) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (in.nextName().equals("total")) {
+                        trackCount = in.nextInt();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (id == null || name == null || uri == null) {
+            return null;
+        }
+        return new SpotifyAPI.Playlist(id, name, uri, trackCount, snapshotId);
+    }
+
+    // Playlist items wrap the track: {"added_at": ..., "track": {...} | null}
+    private static TrackFields readPlaylistItem(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TrackFields track = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("track")) {
+                track = readTrackOrNull(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return track;
+    }
+
+    private static TrackFields readTrackOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TrackFields track = new TrackFields();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("id")) {
+                track.id = nextStringOrNull(in);
+            } else if (field.equals("uri")) {
+                track.uri = nextStringOrNull(in);
+            } else if (field.equals("name")) {
+                track.name = nextStringOrNull(in);
+            } else if (field.equals("duration_ms")) {
+                track.durationMs = in.nextInt();
+            } else if (field.equals("artists")) {
+                String artist = readFirstName(in);
+                if (artist != null) {
+                    track.artist = artist;
+                }
+            } else if (field.equals("album")) {
+                String album = readNameAndUri(in)[0];
+                if (album != null) {
+                    track.album = album;
+                }
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return track;
+    }
+
+    // Name of the first object in an array of {"name": ...} objects, e.g. artists
+    private static String readFirstName(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        String first = null;
+        in.beginArray();
+        while (in.hasNext()) {
+            if (first == null) {
+                first = readNameAndUri(in)[0];
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endArray();
+        return first;
+    }
+
+    private static String[] readNameAndUri(JsonReader in) throws IOException {
+        String[] nameAndUri = new String[2];
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return nameAndUri;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("name")) {
+                nameAndUri[0] = nextStringOrNull(in);
+            } else if (field.equals("uri")) {
+                nameAndUri[1] = nextStringOrNull(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return nameAndUri;
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
@@ -99,8 +99,8 @@ public class CommandParty extends CommandBase {
                     sender.addChatMessage(new ChatComponentText("\u00a78Share this code with friends to join!"));
                     LogBuffer.get().info("Party created name=" + party.getPartyName() + " id=" + party.getPartyId());
                 } else {
-                    sender.addChatMessage(new ChatComponentText("\u00a7c\u2717 \u00a77Failed to create party. Check your active profile."));
-                    LogBuffer.get().warn("Party creation failed - no active profile");
+                    sender.addChatMessage(new ChatComponentText("\u00a7c\u2717 \u00a77Failed to create party. Join a server first."));
+                    LogBuffer.get().warn("Party creation failed - not on a server");
                 }
                 break;
 
@@ -112,11 +112,11 @@ public class CommandParty extends CommandBase {
                 String partyCode = args[2].toUpperCase();
                 if (partyManager.joinParty(partyCode)) {
                     ListeningParty joinedParty = partyManager.getCurrentParty();
-                    sender.addChatMessage(new ChatComponentText("\u00a7a\u2713 \u00a77Joined party: \u00a7f" + joinedParty.getPartyName()));
+                    sender.addChatMessage(new ChatComponentText("\u00a7a\u2713 \u00a77Asked to join party: \u00a7f" + joinedParty.getPartyName()));
                     sender.addChatMessage(new ChatComponentText("\u00a78Your playback will sync with the host."));
-                    LogBuffer.get().info("Joined party id=" + partyCode);
+                    LogBuffer.get().info("Requested to join party id=" + partyCode);
                 } else {
-                    sender.addChatMessage(new ChatComponentText("\u00a7c\u2717 \u00a77Failed to join party. Check the code."));
+                    sender.addChatMessage(new ChatComponentText("\u00a7c\u2717 \u00a77Failed to join party. Check the code, or wait for the host to announce it."));
                     LogBuffer.get().warn("Failed to join party id=" + partyCode);
                 }
                 break;
@@ -23,6 +23,9 @@ public class SpotifyConfig {
     private boolean hudEnabled;
     private String hudColorScheme;
     private boolean hudBackground;
+    private boolean hudFramebuffer;
+    private int apiThreads;
+    private int apiQueueLimit;
 
     public SpotifyConfig(File configFile) {
         config = new Configuration(configFile);
@@ -47,6 +50,9 @@ public class SpotifyConfig {
         hudEnabled = config.getBoolean("hudEnabled", "display", true, "Show HUD Overlay");
         hudColorScheme = config.getString("hudColorScheme", "display", "DEFAULT", "HUD Color Scheme");
         hudBackground = config.getBoolean("hudBackground", "display", true, "Show HUD Background");
+        hudFramebuffer = config.getBoolean("hudFramebuffer", "display", false, "Draw the HUD from a cached texture, redrawn only when it changes");
+        apiThreads = config.getInt("apiThreads", "network", 4, 1, 16, "Threads used for Spotify Web API requests");
+        apiQueueLimit = config.getInt("apiQueueLimit", "network", 64, 1, 1024, "Max queued Spotify requests before new ones are dropped");
 
         if (config.hasChanged()) {
             config.save();
@@ -62,6 +68,9 @@ public class SpotifyConfig {
         config.get("display", "hudEnabled", true).set(hudEnabled);
         config.get("display", "hudColorScheme", "DEFAULT").set(hudColorScheme);
         config.get("display", "hudBackground", true).set(hudBackground);
+        config.get("display", "hudFramebuffer", false).set(hudFramebuffer);
+        config.get("network", "apiThreads", 4).set(apiThreads);
+        config.get("network", "apiQueueLimit", 64).set(apiQueueLimit);
         
         if (config.hasChanged()) {
             config.save();
@@ -132,6 +141,22 @@ public class SpotifyConfig {
         this.hudBackground = hudBackground;
     }
 
+    public boolean isHudFramebuffer() {
+        return hudFramebuffer;
+    }
+
+    public void setHudFramebuffer(boolean hudFramebuffer) {
+        this.hudFramebuffer = hudFramebuffer;
+    }
+
+    public int getApiThreads() {
+        return apiThreads;
+    }
+
+    public int getApiQueueLimit() {
+        return apiQueueLimit;
+    }
+
     public SpotifyCredentials loadCredentials() {
         File credentialsFile = new File(configDir, "spotify_credentials.json");
         
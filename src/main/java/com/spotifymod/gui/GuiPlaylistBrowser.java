@@ -2,6 +2,7 @@ package com.spotifymod.gui;
 
 import com.spotifymod.SpotifyMod;
 import com.spotifymod.api.SpotifyAPI;
+import com.spotifymod.user.LibraryCache;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
@@ -13,6 +14,7 @@ import java.util.List;
 
 public class GuiPlaylistBrowser extends GuiScreen {
     private final SpotifyAPI api;
+    private final LibraryCache libraryCache;
     private final GuiScreen parentScreen;
     private List<SpotifyAPI.Playlist> playlists;
     private int scrollOffset = 0;
@@ -27,22 +29,43 @@ public class GuiPlaylistBrowser extends GuiScreen {
 
     public GuiPlaylistBrowser(GuiScreen parent) {
         this.api = SpotifyMod.instance.getSpotifyAPI();
+        this.libraryCache = SpotifyMod.instance.getLibraryCache();
         this.parentScreen = parent;
         this.playlists = new ArrayList<>();
         loadPlaylists();
     }
 
     private void loadPlaylists() {
-        isLoading = true;
-        statusMessage = "Loading playlists...";
-        api.getUserPlaylists().thenAccept(result -> {
-            playlists = result;
+        // Show the cached library straight away, then refresh it in the background
+        List<SpotifyAPI.Playlist> cached = libraryCache.getPlaylists();
+        if (cached != null && !cached.isEmpty()) {
+            playlists = cached;
             isLoading = false;
-            if (playlists.isEmpty()) {
-                statusMessage = "No playlists found";
-            } else {
+            statusMessage = "Refreshing playlists...";
+        } else {
+            isLoading = true;
+            statusMessage = "Loading playlists...";
+        }
+
+        api.getUserPlaylists().thenAccept(result -> {
+            if (result.isEmpty() && !playlists.isEmpty()) {
+                // Failed or empty response, keep showing what we have
+                isLoading = false;
                 statusMessage = "";
+                return;
             }
+            // Also drops cached tracks of playlists whose snapshot changed
+            libraryCache.putPlaylists(result);
+            Minecraft minecraft = Minecraft.getMinecraft();
+            minecraft.addScheduledTask(() -> {
+                playlists = result;
+                isLoading = false;
+                statusMessage = playlists.isEmpty() ? "No playlists found" : "";
+                if (this.equals(minecraft.currentScreen)) {
+                    scrollOffset = Math.max(0, Math.min(scrollOffset, playlists.size() - ITEMS_PER_PAGE));
+                    updatePlaylistButtons();
+                }
+            });
         });
     }
 
@@ -1,25 +1,29 @@
 package com.spotifymod.gui;
 
 import com.spotifymod.SpotifyMod;
+import com.spotifymod.api.PlaylistTrackLoader;
 import com.spotifymod.api.SpotifyAPI;
 import com.spotifymod.debug.LogBuffer;
+import com.spotifymod.user.LibraryCache;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
 import org.lwjgl.input.Keyboard;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 public class GuiPlaylistTracks extends GuiScreen {
     private final SpotifyAPI api;
+    private final LibraryCache libraryCache;
     private final GuiScreen parentScreen;
     private final SpotifyAPI.Playlist playlist;
-    private List<SpotifyAPI.PlaylistTrack> tracks;
+    private final PlaylistTrackLoader tracks;
     private int scrollOffset = 0;
     private static final int ITEMS_PER_PAGE = 10;
-    private boolean isLoading = true;
     private String statusMessage = "";
+    // Offset the cache holds pages up to; written from HTTP threads
+    private int cachedOffset = 0;
 
     private GuiButton backButton;
     private GuiButton playAllButton;
@@ -28,34 +32,65 @@ public class GuiPlaylistTracks extends GuiScreen {
 
     public GuiPlaylistTracks(GuiScreen parent, SpotifyAPI.Playlist playlist) {
         this.api = SpotifyMod.instance.getSpotifyAPI();
+        this.libraryCache = SpotifyMod.instance.getLibraryCache();
         this.parentScreen = parent;
         this.playlist = playlist;
-        this.tracks = new ArrayList<>();
-        loadTracks();
+        this.tracks = new PlaylistTrackLoader(api, playlist.id, this::onTracksLoaded);
+
+        // Unchanged since we last loaded it, no need to ask Spotify again for what we have
+        LibraryCache.TrackPages cached = libraryCache.getTracks(playlist);
+        if (cached != null) {
+            tracks.startFrom(cached.tracks, cached.loadedOffset, cached.total);
+            cachedOffset = cached.loadedOffset;
+            LogBuffer.get().info("Loaded " + cached.tracks.size() + " cached tracks for playlist: " + playlist.name
+                    + (cached.isComplete() ? "" : " (partial)"));
+        } else {
+            tracks.start();
+        }
     }
 
-    private void loadTracks() {
-        isLoading = true;
-        statusMessage = "Loading tracks...";
-        api.getPlaylistTracks(playlist.id).thenAccept(result -> {
-            tracks = result;
-            isLoading = false;
-            if (tracks.isEmpty()) {
-                statusMessage = "No tracks found";
-                LogBuffer.get().warn("getPlaylistTracks returned empty list for playlist: " + playlist.id);
-            } else {
-                statusMessage = "";
-                LogBuffer.get().info("Loaded " + tracks.size() + " tracks for playlist: " + playlist.name);
+    // Called from the HTTP thread whenever a page arrives
+    private void onTracksLoaded() {
+        if (tracks.isComplete() && tracks.size() == 0) {
+            LogBuffer.get().warn("getPlaylistTracks returned empty list for playlist: " + playlist.id);
+        }
+        // Cache each page as it lands, so reopening is instant however far the user scrolled.
+        // The loader's lock keeps the tracks, offset and total from the same page;
+        // the cache is updated after letting go of it
+        List<SpotifyAPI.PlaylistTrack> loaded = null;
+        int loadedOffset;
+        int total;
+        synchronized (tracks) {
+            loadedOffset = tracks.getLoadedOffset();
+            total = tracks.getTotal();
+            if (loadedOffset > cachedOffset && total >= 0) {
+                loaded = tracks.getTracks();
+                cachedOffset = loadedOffset;
+            }
+        }
+        if (loaded != null) {
+            libraryCache.putTracks(playlist, loaded, loadedOffset, total);
+        }
+        // Update GUI on main thread
+        Minecraft minecraft = Minecraft.getMinecraft();
+        minecraft.addScheduledTask(() -> {
+            if (this.equals(minecraft.currentScreen)) {
+                updateTrackButtons();
             }
-            // Update GUI on main thread
-            mc.addScheduledTask(() -> {
-                if (this.equals(mc.currentScreen)) {
-                    updateTrackButtons();
-                }
-            });
         });
     }
 
+    private boolean isLoading() {
+        return tracks.size() == 0 && !tracks.isComplete() && !tracks.hasFailed();
+    }
+
+    private void scrollTo(int offset) {
+        scrollOffset = offset;
+        // Prefetch the next page before the user reaches the end of what is loaded
+        tracks.ensureLoaded(scrollOffset + ITEMS_PER_PAGE);
+        updateTrackButtons();
+    }
+
     @Override
     public void initGui() {
         Keyboard.enableRepeatEvents(true);
@@ -134,14 +169,12 @@ public class GuiPlaylistTracks extends GuiScreen {
                 break;
             case 2: // Scroll Up
                 if (scrollOffset > 0) {
-                    scrollOffset--;
-                    updateTrackButtons();
+                    scrollTo(scrollOffset - 1);
                 }
                 break;
             case 3: // Scroll Down
                 if (scrollOffset + ITEMS_PER_PAGE < tracks.size()) {
-                    scrollOffset++;
-                    updateTrackButtons();
+                    scrollTo(scrollOffset + 1);
                 }
                 break;
             default:
@@ -174,15 +207,23 @@ public class GuiPlaylistTracks extends GuiScreen {
         drawCenteredString(fontRendererObj, playlist.name, centerX, 20, 0xFFFFFF);
         drawCenteredString(fontRendererObj, playlist.trackCount + " tracks", centerX, 35, 0xAAAAAA);
 
-        if (isLoading) {
+        if (isLoading()) {
             drawCenteredString(fontRendererObj, "Loading tracks...", centerX, height / 2, 0xAAAAAA);
-        } else if (tracks.isEmpty()) {
-            drawCenteredString(fontRendererObj, "No tracks found", centerX, height / 2, 0xFF5555);
+        } else if (tracks.size() == 0) {
+            String message = tracks.hasFailed() ? "Failed to load tracks" : "No tracks found";
+            drawCenteredString(fontRendererObj, message, centerX, height / 2, 0xFF5555);
         } else {
-            // Page indicator
-            int totalPages = (int) Math.ceil((double) tracks.size() / ITEMS_PER_PAGE);
+            // Page indicator, counted against the full playlist while pages are still loading
+            int loaded = tracks.size();
+            int known = tracks.isComplete() ? loaded : Math.max(loaded, tracks.getTotal());
+            int totalPages = (int) Math.ceil((double) known / ITEMS_PER_PAGE);
             int currentPage = (scrollOffset / ITEMS_PER_PAGE) + 1;
             String pageInfo = "Page " + currentPage + " / " + totalPages;
+            if (tracks.hasFailed()) {
+                pageInfo += " (failed to load more)";
+            } else if (tracks.isLoading()) {
+                pageInfo += " (loading " + loaded + " / " + known + ")";
+            }
             drawCenteredString(fontRendererObj, pageInfo, centerX, 48, 0x888888);
         }
 
@@ -202,14 +243,12 @@ public class GuiPlaylistTracks extends GuiScreen {
             if (wheel > 0) {
                 // Scroll up
                 if (scrollOffset > 0) {
-                    scrollOffset--;
-                    updateTrackButtons();
+                    scrollTo(scrollOffset - 1);
                 }
             } else {
                 // Scroll down
                 if (scrollOffset + ITEMS_PER_PAGE < tracks.size()) {
-                    scrollOffset++;
-                    updateTrackButtons();
+                    scrollTo(scrollOffset + 1);
                 }
             }
         }
@@ -218,6 +257,7 @@ public class GuiPlaylistTracks extends GuiScreen {
     @Override
     public void onGuiClosed() {
         Keyboard.enableRepeatEvents(false);
+        tracks.cancel();
     }
 
     @Override
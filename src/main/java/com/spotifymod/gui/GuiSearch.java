@@ -1,6 +1,7 @@
 package com.spotifymod.gui;
 
 import com.spotifymod.SpotifyMod;
+import com.spotifymod.api.SearchCache;
 import com.spotifymod.api.SpotifyAPI;
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
@@ -10,8 +11,14 @@ import org.lwjgl.input.Keyboard;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class GuiSearch extends GuiScreen {
+    // Wait for a pause in typing before hitting the API
+    private static final long DEBOUNCE_MS = 300;
+    // Shared across screens so reopening search and retyping a query is instant
+    private static final SearchCache searchCache = new SearchCache(32);
+
     private final SpotifyAPI api;
     private final GuiScreen parentScreen;
     private GuiTextField searchField;
@@ -23,6 +30,9 @@ public class GuiSearch extends GuiScreen {
     private String searchType = "track"; // "track", "artist", or "track,artist"
     private String repeatMode = "off"; // "off", "context", "track"
     private SpotifyAPI.SearchResult lastPlayedResult = null;
+    private String lastQuery = "";
+    private long searchDueAt = 0;
+    private CompletableFuture<List<SpotifyAPI.SearchResult>> pendingSearch;
 
     private GuiButton backButton;
     private GuiButton searchButton;
@@ -45,10 +55,12 @@ public class GuiSearch extends GuiScreen {
         int centerX = width / 2;
 
         // Search field
+        // Keep the query when the screen is rebuilt (resize, type toggle)
+        String text = searchField != null ? searchField.getText() : "";
         searchField = new GuiTextField(0, fontRendererObj, centerX - 150, 50, 250, 20);
         searchField.setMaxStringLength(100);
         searchField.setFocused(true);
-        searchField.setText("");
+        searchField.setText(text);
 
         backButton = new GuiButton(0, centerX - 155, height - 30, 70, 20, "Back");
         searchButton = new GuiButton(1, centerX + 110, 50, 50, 20, "Search");
@@ -147,6 +159,7 @@ public class GuiSearch extends GuiScreen {
                     searchType = "track";
                 }
                 initGui();
+                onQueryChanged();
                 break;
             case 5: // Cycle Repeat
                 if (repeatMode.equals("off")) {
@@ -156,7 +169,7 @@ public class GuiSearch extends GuiScreen {
                 } else {
                     repeatMode = "off";
                 }
-                api.setRepeat(repeatMode).thenAccept(success -> {
+                SpotifyMod.instance.getPlaybackService().setRepeat(repeatMode).thenAccept(success -> {
                     if (success) {
                         statusMessage = "Repeat: " + repeatMode.toUpperCase();
                         mc.addScheduledTask(this::initGui);
@@ -191,27 +204,97 @@ public class GuiSearch extends GuiScreen {
         }
     }
 
+    /**
+     * Show what we can for the current text right away and schedule the real search.
+     */
+    private void onQueryChanged() {
+        String query = searchField.getText().trim();
+        lastQuery = query;
+        cancelPendingSearch();
+        scrollOffset = 0;
+
+        if (query.isEmpty()) {
+            searchDueAt = 0;
+            showResults(new ArrayList<>(), "");
+            return;
+        }
+
+        List<SpotifyAPI.SearchResult> cached = searchCache.get(query, searchType);
+        if (cached != null) {
+            searchDueAt = 0;
+            showResults(cached, resultsMessage(cached));
+            return;
+        }
+
+        // Narrowing a query we already have: filter those results while the new request runs
+        List<SpotifyAPI.SearchResult> narrowed = searchCache.findByPrefix(query, searchType);
+        if (narrowed != null) {
+            showResults(narrowed, "Searching...");
+        }
+        searchDueAt = System.currentTimeMillis() + DEBOUNCE_MS;
+    }
+
     private void performSearch() {
         String query = searchField.getText().trim();
+        searchDueAt = 0;
         if (query.isEmpty()) {
             statusMessage = "Enter a search query";
             return;
         }
 
-        isLoading = true;
+        List<SpotifyAPI.SearchResult> cached = searchCache.get(query, searchType);
+        if (cached != null) {
+            cancelPendingSearch();
+            showResults(cached, resultsMessage(cached));
+            return;
+        }
+
+        cancelPendingSearch();
+        isLoading = results.isEmpty();
         statusMessage = "Searching...";
-        scrollOffset = 0;
 
-        api.search(query, searchType).thenAccept(searchResults -> {
-            results = searchResults;
-            isLoading = false;
-            if (results.isEmpty()) {
-                statusMessage = "No results found";
-            } else {
-                statusMessage = "Found " + results.size() + " results";
+        String type = searchType;
+        CompletableFuture<List<SpotifyAPI.SearchResult>> search = api.search(query, type);
+        pendingSearch = search;
+        search.thenAccept(searchResults -> mc.addScheduledTask(() -> {
+            // A newer query may have replaced this one while it was in flight
+            if (search != pendingSearch) {
+                return;
+            }
+            pendingSearch = null;
+            // Failed searches come back empty, don't remember those
+            if (!searchResults.isEmpty()) {
+                searchCache.put(query, type, searchResults);
             }
-            mc.addScheduledTask(this::updateResultButtons);
-        });
+            showResults(searchResults, resultsMessage(searchResults));
+        }));
+    }
+
+    private void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+            pendingSearch = null;
+        }
+    }
+
+    private void showResults(List<SpotifyAPI.SearchResult> searchResults, String message) {
+        results = searchResults;
+        isLoading = false;
+        statusMessage = message;
+        scrollOffset = Math.max(0, Math.min(scrollOffset, results.size() - ITEMS_PER_PAGE));
+        updateResultButtons();
+    }
+
+    private static String resultsMessage(List<SpotifyAPI.SearchResult> searchResults) {
+        return searchResults.isEmpty() ? "No results found" : "Found " + searchResults.size() + " results";
+    }
+
+    @Override
+    public void updateScreen() {
+        searchField.updateCursorCounter();
+        if (searchDueAt != 0 && System.currentTimeMillis() >= searchDueAt) {
+            performSearch();
+        }
     }
 
     @Override
@@ -280,12 +363,16 @@ public class GuiSearch extends GuiScreen {
             mc.displayGuiScreen(parentScreen);
         } else {
             searchField.textboxKeyTyped(typedChar, keyCode);
+            if (!searchField.getText().trim().equals(lastQuery)) {
+                onQueryChanged();
+            }
         }
     }
 
     @Override
     public void onGuiClosed() {
         Keyboard.enableRepeatEvents(false);
+        cancelPendingSearch();
     }
 
     @Override
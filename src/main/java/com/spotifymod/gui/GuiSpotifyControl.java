@@ -4,6 +4,9 @@ import com.spotifymod.SpotifyMod;
 import com.spotifymod.api.SpotifyAPI;
 import com.spotifymod.auth.OAuthCallbackServer;
 import com.spotifymod.network.ModNetworkHandler;
+import com.spotifymod.playback.PlaybackListener;
+import com.spotifymod.playback.PlaybackSnapshot;
+import com.spotifymod.playback.PlaybackStateService;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
@@ -20,13 +23,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-public class GuiSpotifyControl extends GuiScreen {
+public class GuiSpotifyControl extends GuiScreen implements PlaybackListener {
     private final SpotifyAPI api;
+    private final PlaybackStateService playbackService;
     private volatile SpotifyAPI.TrackInfo currentTrack;
-    private volatile boolean isUpdatingTrack = false;
     private String statusMessage = "";
     private String authUrl = null;
-    private int updateTimer = 0;
     
     private GuiButton playPauseButton;
     private GuiButton prevButton;
@@ -54,6 +56,7 @@ public class GuiSpotifyControl extends GuiScreen {
 
     public GuiSpotifyControl() {
         this.api = SpotifyMod.instance.getSpotifyAPI();
+        this.playbackService = SpotifyMod.instance.getPlaybackService();
     }
 
     @Override
@@ -107,7 +110,11 @@ public class GuiSpotifyControl extends GuiScreen {
             buttonList.add(repeatButton);
             buttonList.add(broadcastButton);
 
+            // Show what the shared poller already has, then ask for a fresh one
+            playbackService.addListener(this);
+            onSnapshot(playbackService.getSnapshot());
             updateCurrentTrack();
+            updateQueue();
         }
     }
 
@@ -118,32 +125,19 @@ public class GuiSpotifyControl extends GuiScreen {
                 authenticate();
                 break;
             case 1: // Previous
-                api.previous().thenAccept(success -> {
-                    if (success) {
-                        statusMessage = "Previous track";
-                        updateCurrentTrack();
-                    }
+                playbackService.skipPrevious().thenAccept(success -> {
+                    if (success) statusMessage = "Previous track";
                 });
                 break;
             case 2: // Play/Pause
-                if (currentTrack != null && currentTrack.isPlaying) {
-                    api.pause().thenAccept(success -> {
-                        if (success) statusMessage = "Paused";
-                        updateCurrentTrack();
-                    });
-                } else {
-                    api.play().thenAccept(success -> {
-                        if (success) statusMessage = "Playing";
-                        updateCurrentTrack();
-                    });
-                }
+                boolean pausing = playbackService.getSnapshot().isPlaying();
+                playbackService.togglePlayPause().thenAccept(success -> {
+                    if (success) statusMessage = pausing ? "Paused" : "Playing";
+                });
                 break;
             case 3: // Next
-                api.next().thenAccept(success -> {
-                    if (success) {
-                        statusMessage = "Next track";
-                        updateCurrentTrack();
-                    }
+                playbackService.skipNext().thenAccept(success -> {
+                    if (success) statusMessage = "Next track";
                 });
                 break;
             case 6: // Playlists
@@ -191,7 +185,7 @@ public class GuiSpotifyControl extends GuiScreen {
                 break;
             case 14: // Toggle Shuffle
                 isShuffleOn = !isShuffleOn;
-                api.setShuffle(isShuffleOn).thenAccept(success -> {
+                playbackService.setShuffle(isShuffleOn).thenAccept(success -> {
                     if (success) {
                         statusMessage = isShuffleOn ? "Shuffle ON" : "Shuffle OFF";
                         mc.addScheduledTask(this::initGui);
@@ -208,7 +202,7 @@ public class GuiSpotifyControl extends GuiScreen {
                     newRepeatMode = "off";
                 }
                 String finalRepeatMode = newRepeatMode;
-                api.setRepeat(newRepeatMode).thenAccept(success -> {
+                playbackService.setRepeat(newRepeatMode).thenAccept(success -> {
                     if (success) {
                         repeatMode = finalRepeatMode;
                         statusMessage = "Repeat: " + repeatMode.toUpperCase();
@@ -267,41 +261,34 @@ public class GuiSpotifyControl extends GuiScreen {
     }
 
     private void updateCurrentTrack() {
-        if (isUpdatingTrack) return;
-        isUpdatingTrack = true;
-        api.getCurrentTrack().thenAccept(track -> {
-            if (track != null) {
-                currentTrack = track;
-                lastTrackUpdateTime = System.currentTimeMillis();
-            }
-            isUpdatingTrack = false;
-        }).exceptionally(e -> {
-            isUpdatingTrack = false;
-            return null;
-        });
-        
-        // Also update queue
+        playbackService.requestRefresh();
+    }
+
+    private void updateQueue() {
         api.getQueue().thenAccept(queue -> {
             queueTracks = queue;
         });
     }
 
-    private int getCurrentVolume() {
-        // Default to 50 if we can't determine current volume
-        return 50;
+    @Override
+    public void onTrackChanged(PlaybackSnapshot previous, PlaybackSnapshot current) {
+        // Up Next only moves when the track does
+        updateQueue();
     }
 
     @Override
-    public void updateScreen() {
-        super.updateScreen();
-        updateTimer++;
-
-        // Update track info every 3 seconds to reduce flickering
-        if (updateTimer % 60 == 0 && api.isAuthenticated()) {
-            updateCurrentTrack();
+    public void onSnapshot(PlaybackSnapshot snapshot) {
+        if (snapshot.hasTrack()) {
+            currentTrack = snapshot.track;
+            lastTrackUpdateTime = snapshot.fetchedAt;
         }
     }
 
+    private int getCurrentVolume() {
+        // Default to 50 if we can't determine current volume
+        return 50;
+    }
+
     @Override
     public void drawScreen(int mouseX, int mouseY, float partialTicks) {
         drawDefaultBackground();
@@ -476,6 +463,7 @@ public class GuiSpotifyControl extends GuiScreen {
         int y = startY + 15;
         int displayed = 0;
         int maxDisplay = 5;
+        long now = System.nanoTime();
         
         for (Map.Entry<UUID, ModNetworkHandler.PlayerTrackInfo> entry : playerTracks.entrySet()) {
             if (displayed >= maxDisplay) break;
@@ -484,7 +472,7 @@ public class GuiSpotifyControl extends GuiScreen {
             ModNetworkHandler.PlayerTrackInfo trackData = entry.getValue();
             
             // Skip if data is too old (stale check)
-            if (trackData.isStale()) continue;
+            if (trackData.isStale(now)) continue;
             
             // Find player name
             EntityPlayer player = mc.theWorld.getPlayerEntityByUUID(playerId);
@@ -581,7 +569,7 @@ public class GuiSpotifyControl extends GuiScreen {
                     mouseY >= barY - 2 && mouseY <= barY + 6) {
                     float clickProgress = (float)(mouseX - barX) / barWidth;
                     int seekMs = (int)(currentTrack.durationMs * clickProgress);
-                    api.seek(seekMs).thenAccept(success -> {
+                    playbackService.seekTo(seekMs).thenAccept(success -> {
                         if (success) {
                             statusMessage = "Seeked to " + formatTime(seekMs);
                         }
@@ -602,7 +590,7 @@ public class GuiSpotifyControl extends GuiScreen {
                     float volumePercent = ((float)(mouseX - volumeBarX) / volumeBarWidth);
                     int newVolume = (int)(volumePercent * 100);
                     currentVolume = Math.max(0, Math.min(100, newVolume));
-                    api.setVolume(currentVolume);
+                    playbackService.setVolume(currentVolume);
                 }
             }
         }
@@ -624,7 +612,7 @@ public class GuiSpotifyControl extends GuiScreen {
             int clampedVolume = Math.max(0, Math.min(100, newVolume));
             if (clampedVolume != currentVolume) {
                 currentVolume = clampedVolume;
-                api.setVolume(currentVolume);
+                playbackService.setVolume(currentVolume);
             }
         }
     }
@@ -644,6 +632,7 @@ public class GuiSpotifyControl extends GuiScreen {
     @Override
     public void onGuiClosed() {
         Keyboard.enableRepeatEvents(false);
+        playbackService.removeListener(this);
     }
 
     @Override
@@ -1,6 +1,12 @@
 package com.spotifymod.gui;
 
+import com.spotifymod.SpotifyMod;
+import com.spotifymod.api.RequestScheduler;
+import com.spotifymod.api.SpotifyAPI;
 import com.spotifymod.debug.LogBuffer;
+import com.spotifymod.network.ModNetworkHandler;
+import com.spotifymod.party.ClockSync;
+import com.spotifymod.party.PartyManager;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
@@ -38,7 +44,9 @@ public class GuiSpotifyDebug extends GuiScreen {
         drawCenteredString(this.fontRendererObj, "Spotify Debug Log", this.width / 2, 6, 0xFFFFFF);
 
         int x = 8;
-        int y = 50;
+        int y = 44;
+        y = drawStats(x, y);
+        y += 4;
         int maxY = this.height - 8;
         int lineHeight = this.fontRendererObj.FONT_HEIGHT + 2;
         LogBuffer.LogEntry[] entries = LogBuffer.get().snapshot();
@@ -54,6 +62,59 @@ public class GuiSpotifyDebug extends GuiScreen {
         super.drawScreen(mouseX, mouseY, partialTicks);
     }
 
+    // Request counters, drawn above the log; returns the next free y
+    private int drawStats(int x, int y) {
+        int lineHeight = this.fontRendererObj.FONT_HEIGHT + 2;
+        long polls = SpotifyMod.instance.getPlaybackService().getPollCount();
+        String demand = SpotifyMod.instance.getPlaybackService().getDemand().name().toLowerCase();
+        this.fontRendererObj.drawString("Playback polls: " + polls + "  demand " + demand, x, y, 0xFF55FFFF);
+        y += lineHeight;
+
+        SpotifyAPI api = SpotifyMod.instance.getSpotifyAPI();
+        String pool = "API pool: active " + api.getActiveRequestCount() + "/" + api.getMaxRequestThreads()
+                + "  queued " + api.getQueuedRequestCount() + "/" + api.getQueueLimit()
+                + "  dropped " + api.getRejectedRequestCount();
+        int poolColor = api.getQueuedRequestCount() > 0 ? 0xFFFFFF55 : 0xFF55FFFF;
+        this.fontRendererObj.drawString(pool, x, y, poolColor);
+        y += lineHeight;
+
+        RequestScheduler scheduler = api.getRequestScheduler();
+        long retryAfter = scheduler.getRetryAfterRemainingMs();
+        String budget = "API budget: tokens " + scheduler.getAvailableTokens()
+                + "  waiting " + scheduler.getWaitingCount()
+                + "  shed " + scheduler.getShedCount()
+                + "  429s " + scheduler.getRateLimitedCount()
+                + (retryAfter > 0 ? "  retry in " + (retryAfter / 1000 + 1) + "s" : "");
+        int budgetColor = retryAfter > 0 ? 0xFFFF5555 : scheduler.getWaitingCount() > 0 ? 0xFFFFFF55 : 0xFF55FFFF;
+        this.fontRendererObj.drawString(budget, x, y, budgetColor);
+        y += lineHeight;
+
+        ModNetworkHandler network = SpotifyMod.instance.getNetworkHandler();
+        if (network != null) {
+            long dropped = network.getDroppedFloodCount() + network.getDroppedRateLimitedCount()
+                    + network.getDroppedMalformedCount();
+            String sharing = "Track sharing: players " + network.getPlayerTracks().size()
+                    + "  dropped flood " + network.getDroppedFloodCount()
+                    + "  rate " + network.getDroppedRateLimitedCount()
+                    + "  malformed " + network.getDroppedMalformedCount()
+                    + "  evicted " + network.getEvictedPlayerCount();
+            this.fontRendererObj.drawString(sharing, x, y, dropped > 0 ? 0xFFFFFF55 : 0xFF55FFFF);
+            y += lineHeight;
+        }
+
+        PartyManager partyManager = SpotifyMod.instance.getPartyManager();
+        if (partyManager.isInParty() && !partyManager.isPartyHost()) {
+            ClockSync clock = partyManager.getClockSync();
+            String party = clock.hasEstimate()
+                    ? "Party clock: offset " + clock.getOffsetMs() + "ms  rtt " + clock.getRttMs()
+                        + "ms  samples " + clock.getSampleCount()
+                    : "Party clock: measuring...";
+            this.fontRendererObj.drawString(party, x, y, clock.hasEstimate() ? 0xFF55FFFF : 0xFFFFFF55);
+            y += lineHeight;
+        }
+        return y;
+    }
+
     private int colorFor(LogBuffer.LogEntry e) {
         switch (e.level) {
             case TRACE: return 0xFFAAAAAA;
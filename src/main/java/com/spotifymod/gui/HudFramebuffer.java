@@ -0,0 +1,128 @@
+package com.spotifymod.gui;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.client.shader.Framebuffer;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Off-screen copy of the HUD.
+ * The HUD is drawn into this texture only when something on it changes; every
+ * other frame it is put on screen as one textured quad. The texture holds
+ * premultiplied alpha so the translucent background composites the same way
+ * it would when drawn directly.
+ */
+public class HudFramebuffer {
+    private Framebuffer framebuffer;
+    private int guiWidth;
+    private int guiHeight;
+    private int scale;
+
+    /**
+     * Whether this machine can render to a texture at all.
+     */
+    public static boolean isSupported() {
+        return OpenGlHelper.isFramebufferEnabled();
+    }
+
+    /**
+     * Make sure the texture fits an area of the given GUI size.
+     * @return true if the texture was (re)created and has to be drawn again
+     */
+    public boolean resize(int guiWidth, int guiHeight, int scale) {
+        if (framebuffer != null && guiWidth == this.guiWidth && guiHeight == this.guiHeight && scale == this.scale) {
+            return false;
+        }
+        this.guiWidth = guiWidth;
+        this.guiHeight = guiHeight;
+        this.scale = scale;
+        if (framebuffer == null) {
+            framebuffer = new Framebuffer(guiWidth * scale, guiHeight * scale, false);
+            framebuffer.setFramebufferColor(0.0f, 0.0f, 0.0f, 0.0f);
+        } else {
+            framebuffer.createBindFramebuffer(guiWidth * scale, guiHeight * scale);
+        }
+        return true;
+    }
+
+    /**
+     * Clear the texture and redirect drawing into it. GUI coordinates start
+     * at its top-left corner until {@link #endDraw()}.
+     */
+    public void beginDraw() {
+        framebuffer.framebufferClear();
+        framebuffer.bindFramebuffer(true);
+
+        GlStateManager.matrixMode(GL11.GL_PROJECTION);
+        GlStateManager.pushMatrix();
+        GlStateManager.loadIdentity();
+        GlStateManager.ortho(0.0D, guiWidth, guiHeight, 0.0D, 1000.0D, 3000.0D);
+        GlStateManager.matrixMode(GL11.GL_MODELVIEW);
+        GlStateManager.pushMatrix();
+        GlStateManager.loadIdentity();
+        GlStateManager.translate(0.0F, 0.0F, -2000.0F);
+
+        // Keep the written alpha meaningful so the result can be composited later
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Same blend state as {@link #beginDraw()}, for after a call that resets it (Gui.drawRect).
+     */
+    public void restoreDrawBlend() {
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    public void endDraw() {
+        GlStateManager.matrixMode(GL11.GL_PROJECTION);
+        GlStateManager.popMatrix();
+        GlStateManager.matrixMode(GL11.GL_MODELVIEW);
+        GlStateManager.popMatrix();
+        GlStateManager.tryBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ZERO);
+
+        Minecraft.getMinecraft().getFramebuffer().bindFramebuffer(true);
+    }
+
+    /**
+     * Put the texture on screen with its top-left corner at (x, y).
+     */
+    public void draw(int x, int y) {
+        float u = (float) framebuffer.framebufferWidth / framebuffer.framebufferTextureWidth;
+        float v = (float) framebuffer.framebufferHeight / framebuffer.framebufferTextureHeight;
+
+        GlStateManager.enableTexture2D();
+        GlStateManager.enableBlend();
+        GlStateManager.blendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+        framebuffer.bindFramebufferTexture();
+
+        // Texture rows run bottom-up
+        Tessellator tessellator = Tessellator.getInstance();
+        WorldRenderer renderer = tessellator.getWorldRenderer();
+        renderer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX);
+        renderer.pos(x, y + guiHeight, 0.0D).tex(0.0D, 0.0D).endVertex();
+        renderer.pos(x + guiWidth, y + guiHeight, 0.0D).tex(u, 0.0D).endVertex();
+        renderer.pos(x + guiWidth, y, 0.0D).tex(u, v).endVertex();
+        renderer.pos(x, y, 0.0D).tex(0.0D, v).endVertex();
+        tessellator.draw();
+
+        framebuffer.unbindFramebufferTexture();
+        GlStateManager.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Free the texture; the next {@link #resize} creates a new one.
+     */
+    public void delete() {
+        if (framebuffer != null) {
+            framebuffer.deleteFramebuffer();
+            framebuffer = null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.spotifymod.gui;
+
+import com.spotifymod.api.SpotifyAPI;
+import net.minecraft.client.gui.FontRenderer;
+
+/**
+ * Everything the HUD draws that can be worked out ahead of the frame.
+ * Strings and widths are rebuilt only when the track, color scheme or font
+ * renderer changes, and the progress line only when the displayed second
+ * does, so a steady-state frame allocates nothing.
+ */
+public class HudViewModel {
+    private SpotifyAPI.TrackInfo track;
+    private FontRenderer fontRenderer;
+    private String titleText = "";
+    private String artistText = "";
+    private int width;
+
+    private String schemeName;
+    private HudColorScheme scheme = HudColorScheme.DEFAULT;
+
+    // "m:ss / m:ss", filled in place; room for any int number of minutes
+    private final char[] progressChars = new char[32];
+    private String progressText = "";
+    private int shownPositionSecond = -1;
+    private int shownDurationSecond = -1;
+
+    /**
+     * Point the view at a track. Cheap when nothing changed.
+     */
+    public void setTrack(SpotifyAPI.TrackInfo track, FontRenderer fontRenderer) {
+        if (track == this.track && fontRenderer == this.fontRenderer) {
+            return;
+        }
+        this.track = track;
+        this.fontRenderer = fontRenderer;
+        titleText = "Now: " + track.name;
+        artistText = track.artist;
+        width = Math.max(fontRenderer.getStringWidth(titleText), fontRenderer.getStringWidth(artistText)) + 10;
+        shownPositionSecond = -1;
+    }
+
+    /**
+     * Resolve the configured scheme, only scanning the enum when the setting changes.
+     */
+    public HudColorScheme getScheme(String configuredName) {
+        if (configuredName != schemeName) {
+            schemeName = configuredName;
+            scheme = configuredName == null || configuredName.isEmpty()
+                    ? HudColorScheme.DEFAULT
+                    : HudColorScheme.fromString(configuredName);
+        }
+        return scheme;
+    }
+
+    public String getTitleText() {
+        return titleText;
+    }
+
+    public String getArtistText() {
+        return artistText;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * The "m:ss / m:ss" line for the given position, rebuilt once per displayed second.
+     */
+    public String getProgressText(int positionMs) {
+        int positionSecond = positionMs / 1000;
+        int durationSecond = track.durationMs / 1000;
+        if (positionSecond != shownPositionSecond || durationSecond != shownDurationSecond) {
+            shownPositionSecond = positionSecond;
+            shownDurationSecond = durationSecond;
+            int length = writeTime(progressChars, 0, positionSecond);
+            progressChars[length++] = ' ';
+            progressChars[length++] = '/';
+            progressChars[length++] = ' ';
+            length = writeTime(progressChars, length, durationSecond);
+            progressText = new String(progressChars, 0, length);
+        }
+        return progressText;
+    }
+
+    // Same layout as "%d:%02d" on minutes and seconds
+    private static int writeTime(char[] chars, int offset, int totalSeconds) {
+        int minutes = totalSeconds / 60;
+        int seconds = totalSeconds % 60;
+        int digits = 1;
+        for (int rest = minutes; rest >= 10; rest /= 10) digits++;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + minutes % 10);
+            minutes /= 10;
+        }
+        offset += digits;
+        chars[offset++] = ':';
+        chars[offset++] = (char) ('0' + seconds / 10);
+        chars[offset++] = (char) ('0' + seconds % 10);
+        return offset;
+    }
+}
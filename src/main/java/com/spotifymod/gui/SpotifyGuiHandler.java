@@ -3,19 +3,24 @@ package com.spotifymod.gui;
 import com.spotifymod.SpotifyMod;
 import com.spotifymod.api.SpotifyAPI;
 import com.spotifymod.config.SpotifyConfig;
+import com.spotifymod.playback.PlaybackListener;
+import com.spotifymod.playback.PlaybackSnapshot;
+import com.spotifymod.playback.PlaybackStateService;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.FontRenderer;
 import net.minecraft.client.gui.ScaledResolution;
 import net.minecraftforge.client.event.RenderGameOverlayEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import org.lwjgl.input.Mouse;
+import org.lwjgl.opengl.Display;
 
-public class SpotifyGuiHandler {
+public class SpotifyGuiHandler implements PlaybackListener {
     private final SpotifyAPI api;
+    private final PlaybackStateService playbackService;
     private volatile SpotifyAPI.TrackInfo cachedTrack;
+    // Snapshot cachedTrack came from; polls are seconds apart, so the position is extrapolated from it
+    private volatile PlaybackSnapshot cachedSnapshot = PlaybackSnapshot.EMPTY;
     private volatile SpotifyAPI.TrackInfo previousTrack;
-    private int updateTimer = 0;
-    private volatile boolean isUpdating = false;
     
     // Fade animation
     private float fadeAlpha = 1.0f;
@@ -29,11 +34,22 @@ public class SpotifyGuiHandler {
     private int dragOffsetY = 0;
     private int hudWidth = 0;
     private int hudHeight = 30;
+    private final HudViewModel view = new HudViewModel();
+    
+    // Cached HUD texture and what is currently drawn on it
+    private final HudFramebuffer hudFramebuffer = new HudFramebuffer();
+    private String renderedTitle;
+    private String renderedArtist;
+    private String renderedProgress;
+    private boolean renderedBackground;
+    private final int[] renderedColors = new int[3];
     
     private static SpotifyGuiHandler instance;
 
-    public SpotifyGuiHandler(SpotifyAPI api) {
+    public SpotifyGuiHandler(SpotifyAPI api, PlaybackStateService playbackService) {
         this.api = api;
+        this.playbackService = playbackService;
+        playbackService.addListener(this);
         instance = this;
     }
     
@@ -46,8 +62,38 @@ public class SpotifyGuiHandler {
      * Call this when track changes via hotkeys to prevent flickering.
      */
     public void forceUpdate() {
-        updateTimer = 0; // Reset timer to trigger update on next frame
-        isUpdating = false; // Allow new update
+        playbackService.requestRefresh();
+    }
+
+    @Override
+    public void onTrackChanged(PlaybackSnapshot previous, PlaybackSnapshot current) {
+        if (cachedTrack != null && current.hasTrack() && !current.track.isSameTrack(cachedTrack)) {
+            // Track changed - start fade animation
+            previousTrack = cachedTrack;
+            isFading = true;
+            fadeStartTime = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public void onSnapshot(PlaybackSnapshot snapshot) {
+        // Keep showing the last track when playback stops
+        if (snapshot.hasTrack()) {
+            cachedTrack = snapshot.track;
+            cachedSnapshot = snapshot;
+        }
+    }
+
+    /**
+     * Whether the HUD is actually in front of the player right now.
+     */
+    public boolean isHudVisible() {
+        Minecraft mc = Minecraft.getMinecraft();
+        return SpotifyMod.instance.getConfig().isHudEnabled()
+                && mc.theWorld != null
+                && !mc.gameSettings.hideGUI
+                && !mc.isGamePaused()
+                && Display.isActive();
     }
 
     public static void setDragMode(boolean enabled) {
@@ -72,28 +118,6 @@ public class SpotifyGuiHandler {
 
         Minecraft mc = Minecraft.getMinecraft();
         
-        // Update track info every 2 seconds
-        updateTimer++;
-        if ((updateTimer % 40 == 0 || cachedTrack == null) && !isUpdating) {
-            isUpdating = true;
-            api.getCurrentTrack().thenAccept(track -> {
-                if (track != null) {
-                    // Check if track changed
-                    if (cachedTrack != null && !track.name.equals(cachedTrack.name)) {
-                        // Track changed - start fade animation
-                        previousTrack = cachedTrack;
-                        isFading = true;
-                        fadeStartTime = System.currentTimeMillis();
-                    }
-                    cachedTrack = track;
-                }
-                isUpdating = false;
-            }).exceptionally(e -> {
-                isUpdating = false;
-                return null;
-            });
-        }
-        
         // Update fade animation
         if (isFading) {
             long elapsed = System.currentTimeMillis() - fadeStartTime;
@@ -116,7 +140,8 @@ public class SpotifyGuiHandler {
         }
 
         // Always use the cached track - don't check if it's null during rendering
-        SpotifyAPI.TrackInfo trackToRender = cachedTrack;
+        PlaybackSnapshot snapshotToRender = cachedSnapshot;
+        SpotifyAPI.TrackInfo trackToRender = snapshotToRender.track;
         if (trackToRender != null) {
             FontRenderer fr = mc.fontRendererObj;
             
@@ -124,15 +149,13 @@ public class SpotifyGuiHandler {
             int x = config.getHudX();
             int y = config.getHudY();
             
-            // Calculate HUD dimensions
-            hudWidth = Math.max(
-                fr.getStringWidth("Now: " + trackToRender.name),
-                fr.getStringWidth(trackToRender.artist)
-            ) + 10;
+            // Strings and widths only change with the track
+            view.setTrack(trackToRender, fr);
+            hudWidth = view.getWidth();
             
             // Handle dragging in drag mode
             if (dragMode) {
-                ScaledResolution sr = new ScaledResolution(mc);
+                ScaledResolution sr = event.resolution;
                 int mouseX = Mouse.getX() * sr.getScaledWidth() / mc.displayWidth;
                 int mouseY = sr.getScaledHeight() - Mouse.getY() * sr.getScaledHeight() / mc.displayHeight - 1;
                 
@@ -170,30 +193,46 @@ public class SpotifyGuiHandler {
                 drawRect(x - 3, y - 3, x + hudWidth + 1, y + hudHeight + 1, 0xFF00FF00);
             }
             
-            // Draw a semi-transparent background (if enabled)
-            if (config.isHudBackground()) {
-                drawRect(x - 2, y - 2, x + hudWidth, y + hudHeight, 0x80000000);
-            }
-            
             // Get color scheme and current ticks for animation
-            String schemeStr = config.getHudColorScheme();
-            if (schemeStr == null || schemeStr.isEmpty()) {
-                schemeStr = "DEFAULT";
-            }
-            HudColorScheme scheme = HudColorScheme.fromString(schemeStr);
+            HudColorScheme scheme = view.getScheme(config.getHudColorScheme());
             long ticks = mc.theWorld != null ? mc.theWorld.getTotalWorldTime() : System.currentTimeMillis() / 50;
             
             // Apply fade alpha to colors
             int alphaComponent = (int) (fadeAlpha * 255) << 24;
             
-            // Draw track info with animated colors and fade
+            // Track info with animated colors and fade
             int titleColor = (scheme.getColor(0, ticks) & 0x00FFFFFF) | alphaComponent;
             int artistColor = (scheme.getColor(1, ticks) & 0x00FFFFFF) | alphaComponent;
             int progressColor = (scheme.getColor(2, ticks) & 0x00FFFFFF) | alphaComponent;
+            int positionMs = snapshotToRender.estimatePositionMs(System.currentTimeMillis());
+            String progressText = view.getProgressText(positionMs);
+            boolean background = config.isHudBackground();
             
-            fr.drawStringWithShadow("Now: " + trackToRender.name, x, y, titleColor);
-            fr.drawStringWithShadow(trackToRender.artist, x, y + 10, artistColor);
-            fr.drawStringWithShadow(trackToRender.getProgressString(), x, y + 20, progressColor);
+            if (!dragMode && config.isHudFramebuffer() && HudFramebuffer.isSupported()) {
+                // Redraw the cached copy only when something on it changed
+                boolean stale = hudFramebuffer.resize(hudWidth + 2, hudHeight + 2, event.resolution.getScaleFactor());
+                if (stale || view.getTitleText() != renderedTitle || view.getArtistText() != renderedArtist
+                        || progressText != renderedProgress || background != renderedBackground
+                        || titleColor != renderedColors[0] || artistColor != renderedColors[1]
+                        || progressColor != renderedColors[2]) {
+                    hudFramebuffer.beginDraw();
+                    drawHudContent(fr, 2, 2, background, titleColor, artistColor, progressColor, progressText, hudFramebuffer);
+                    hudFramebuffer.endDraw();
+                    renderedTitle = view.getTitleText();
+                    renderedArtist = view.getArtistText();
+                    renderedProgress = progressText;
+                    renderedBackground = background;
+                    renderedColors[0] = titleColor;
+                    renderedColors[1] = artistColor;
+                    renderedColors[2] = progressColor;
+                }
+                hudFramebuffer.draw(x - 2, y - 2);
+            } else {
+                if (!dragMode) {
+                    releaseFramebuffer();
+                }
+                drawHudContent(fr, x, y, background, titleColor, artistColor, progressColor, progressText, null);
+            }
             
             // Draw drag mode indicator
             if (dragMode) {
@@ -202,6 +241,30 @@ public class SpotifyGuiHandler {
         }
     }
 
+    /**
+     * Background and the three text lines, with the HUD's top-left text corner at (x, y).
+     */
+    private void drawHudContent(FontRenderer fr, int x, int y, boolean background, int titleColor,
+                                int artistColor, int progressColor, String progressText, HudFramebuffer target) {
+        if (background) {
+            drawRect(x - 2, y - 2, x + hudWidth, y + hudHeight, 0x80000000);
+            if (target != null) {
+                // drawRect leaves blending off
+                target.restoreDrawBlend();
+            }
+        }
+        fr.drawStringWithShadow(view.getTitleText(), x, y, titleColor);
+        fr.drawStringWithShadow(view.getArtistText(), x, y + 10, artistColor);
+        fr.drawStringWithShadow(progressText, x, y + 20, progressColor);
+    }
+
+    private void releaseFramebuffer() {
+        if (renderedTitle != null) {
+            hudFramebuffer.delete();
+            renderedTitle = null;
+        }
+    }
+
     private void drawRect(int left, int top, int right, int bottom, int color) {
         net.minecraft.client.gui.Gui.drawRect(left, top, right, bottom, color);
     }
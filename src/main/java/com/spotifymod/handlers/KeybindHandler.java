@@ -2,7 +2,7 @@ package com.spotifymod.handlers;
 
 import com.spotifymod.api.SpotifyAPI;
 import com.spotifymod.gui.GuiSpotifyControl;
-import com.spotifymod.gui.SpotifyGuiHandler;
+import com.spotifymod.playback.PlaybackStateService;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.settings.KeyBinding;
 import net.minecraftforge.fml.client.registry.ClientRegistry;
@@ -12,6 +12,7 @@ import org.lwjgl.input.Keyboard;
 
 public class KeybindHandler {
     private final SpotifyAPI api;
+    private final PlaybackStateService playbackService;
     
     private static final String CATEGORY = "Spotify Controls";
     
@@ -20,8 +21,9 @@ public class KeybindHandler {
     private final KeyBinding nextTrack;
     private final KeyBinding prevTrack;
 
-    public KeybindHandler(SpotifyAPI api) {
+    public KeybindHandler(SpotifyAPI api, PlaybackStateService playbackService) {
         this.api = api;
+        this.playbackService = playbackService;
         
         // Register keybindings
         openGui = new KeyBinding("Open Spotify GUI", Keyboard.KEY_P, CATEGORY);
@@ -45,61 +47,17 @@ public class KeybindHandler {
             return;
         }
         
+        // The HUD reflects these on this frame; the service reconciles with Spotify
         if (playPause.isPressed()) {
-            api.getCurrentTrack().thenAccept(track -> {
-                if (track != null && track.isPlaying) {
-                    api.pause();
-                } else {
-                    api.play();
-                }
-                // Force HUD update after play/pause
-                SpotifyGuiHandler handler = SpotifyGuiHandler.getInstance();
-                if (handler != null) {
-                    handler.forceUpdate();
-                }
-            });
+            playbackService.togglePlayPause();
         }
         
         if (nextTrack.isPressed()) {
-            api.next().thenAccept(success -> {
-                if (success) {
-                    // Schedule update on main thread after a delay
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(500);
-                            Minecraft.getMinecraft().addScheduledTask(() -> {
-                                SpotifyGuiHandler handler = SpotifyGuiHandler.getInstance();
-                                if (handler != null) {
-                                    handler.forceUpdate();
-                                }
-                            });
-                        } catch (InterruptedException e) {
-                            // Ignore
-                        }
-                    }).start();
-                }
-            });
+            playbackService.skipNext();
         }
         
         if (prevTrack.isPressed()) {
-            api.previous().thenAccept(success -> {
-                if (success) {
-                    // Schedule update on main thread after a delay
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(500);
-                            Minecraft.getMinecraft().addScheduledTask(() -> {
-                                SpotifyGuiHandler handler = SpotifyGuiHandler.getInstance();
-                                if (handler != null) {
-                                    handler.forceUpdate();
-                                }
-                            });
-                        } catch (InterruptedException e) {
-                            // Ignore
-                        }
-                    }).start();
-                }
-            });
+            playbackService.skipPrevious();
         }
     }
 }
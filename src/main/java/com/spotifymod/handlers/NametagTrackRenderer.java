@@ -5,87 +5,164 @@ import com.spotifymod.network.ModNetworkHandler;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.FontRenderer;
 import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.client.renderer.entity.RenderManager;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraftforge.client.event.RenderLivingEvent;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import org.lwjgl.opengl.GL11;
 
 /**
  * Renders currently playing track above player nametags for mod users.
+ * Nametag events only collect the nearest few labels within range; they are
+ * all drawn together at the end of the world pass, farthest first, with the
+ * GL state set once.
  */
 public class NametagTrackRenderer {
-    
+    private static final double MAX_DISTANCE = 32.0;
+    private static final int MAX_LABELS = 16;
+    // Compact scale - smaller than the vanilla nametag
+    private static final float SCALE = 0.016666668F * 0.7F;
+
+    private static class Label {
+        ModNetworkHandler.PlayerTrackInfo trackInfo;
+        double x;
+        double y;
+        double z;
+        double distanceSq;
+    }
+
+    // Nearest first; objects are reused every frame
+    private final Label[] labels = new Label[MAX_LABELS];
+    private int labelCount = 0;
+
+    public NametagTrackRenderer() {
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+    }
+
     @SubscribeEvent
     public void onRenderPlayerNameTag(RenderLivingEvent.Specials.Pre event) {
         if (!(event.entity instanceof EntityPlayer)) return;
-        
+
         EntityPlayer player = (EntityPlayer) event.entity;
-        
+
         // Don't render for ourselves (already have HUD)
         if (player == Minecraft.getMinecraft().thePlayer) return;
-        
+
+        // Event coordinates are relative to the camera
+        double distanceSq = event.x * event.x + event.y * event.y + event.z * event.z;
+        if (distanceSq > MAX_DISTANCE * MAX_DISTANCE) return;
+        if (labelCount == MAX_LABELS && distanceSq >= labels[MAX_LABELS - 1].distanceSq) return;
+
         ModNetworkHandler networkHandler = SpotifyMod.instance.getNetworkHandler();
         if (networkHandler == null) return;
-        
+
         ModNetworkHandler.PlayerTrackInfo trackInfo = networkHandler.getPlayerTrack(player.getUniqueID());
-        if (trackInfo == null) return;
-        
-        // Render track info above nametag
-        renderTrackAboveHead(player, trackInfo, event.x, event.y, event.z);
+        // Expired entries can linger until the network handler's next tick
+        if (trackInfo == null || trackInfo.isStale()) return;
+
+        // Above the nametag
+        addLabel(trackInfo, event.x, event.y + player.height + 0.5F, event.z, distanceSq);
+    }
+
+    private void addLabel(ModNetworkHandler.PlayerTrackInfo trackInfo, double x, double y, double z, double distanceSq) {
+        // When full, the farthest label is dropped and its object reused
+        int pos = labelCount < MAX_LABELS ? labelCount++ : MAX_LABELS - 1;
+        Label label = labels[pos];
+        label.trackInfo = trackInfo;
+        label.x = x;
+        label.y = y;
+        label.z = z;
+        label.distanceSq = distanceSq;
+        while (pos > 0 && labels[pos - 1].distanceSq > distanceSq) {
+            labels[pos] = labels[pos - 1];
+            pos--;
+        }
+        labels[pos] = label;
     }
-    
-    private void renderTrackAboveHead(EntityPlayer player, ModNetworkHandler.PlayerTrackInfo trackInfo, double x, double y, double z) {
-        FontRenderer fontRenderer = Minecraft.getMinecraft().fontRendererObj;
-        String display = trackInfo.getCompactDisplay();
-        
-        // Calculate position (above nametag)
-        float yOffset = player.height + 0.5F;
-        
-        GlStateManager.pushMatrix();
-        GlStateManager.translate((float) x, (float) y + yOffset, (float) z);
-        
-        // Face the camera
-        GlStateManager.rotate(-Minecraft.getMinecraft().getRenderManager().playerViewY, 0.0F, 1.0F, 0.0F);
-        GlStateManager.rotate(Minecraft.getMinecraft().getRenderManager().playerViewX, 1.0F, 0.0F, 0.0F);
-        
-        // Compact scale - smaller than before
-        float scale = 0.016666668F * 0.7F; 
-        GlStateManager.scale(-scale, -scale, scale);
-        
+
+    @SubscribeEvent
+    public void onRenderWorldLast(RenderWorldLastEvent event) {
+        if (labelCount == 0) return;
+
+        Minecraft mc = Minecraft.getMinecraft();
+        FontRenderer fontRenderer = mc.fontRendererObj;
+        RenderManager renderManager = mc.getRenderManager();
+        float viewY = renderManager.playerViewY;
+        float viewX = renderManager.playerViewX;
+
+        // Every label faces the camera, so they share one orientation:
+        // screen-right and screen-down of the scaled label plane in world space
+        double yaw = Math.toRadians(viewY);
+        double pitch = Math.toRadians(viewX);
+        double rightX = -SCALE * Math.cos(yaw);
+        double rightZ = -SCALE * Math.sin(yaw);
+        double downX = SCALE * Math.sin(pitch) * Math.sin(yaw);
+        double downY = -SCALE * Math.cos(pitch);
+        double downZ = -SCALE * Math.sin(pitch) * Math.cos(yaw);
+
         GlStateManager.disableLighting();
         GlStateManager.depthMask(false);
         GlStateManager.disableDepth();
         GlStateManager.enableBlend();
         GlStateManager.tryBlendFuncSeparate(770, 771, 1, 0);
-        
-        int stringWidth = fontRenderer.getStringWidth(display);
-        int xPos = -stringWidth / 2;
-        
-        // Draw compact semi-transparent background
-        drawRect(xPos - 1, -9, xPos + stringWidth + 1, 0, 0x50000000);
-        
-        // Animated color for playing tracks
-        int color;
-        if (trackInfo.isPlaying) {
-            // Subtle pulse animation for active tracks
-            long time = System.currentTimeMillis();
-            float pulse = (float) Math.sin(time * 0.003) * 0.3f + 0.7f;
-            int green = (int) (0x55 + (0xAA - 0x55) * pulse);
-            color = 0xFF000000 | (green << 8);
-        } else {
-            color = 0xFFAA00; // Orange for paused
+
+        // Animated color for playing tracks: a subtle pulse
+        float pulse = (float) Math.sin(System.currentTimeMillis() * 0.003) * 0.3f + 0.7f;
+        int green = (int) (0x55 + (0xAA - 0x55) * pulse);
+        int playingColor = 0xFF000000 | (green << 8);
+
+        // With depth testing off (labels show through walls) draw order decides
+        // overlaps: farthest first, each background followed by its own text,
+        // so nearer labels cover farther ones
+        Tessellator tessellator = Tessellator.getInstance();
+        WorldRenderer renderer = tessellator.getWorldRenderer();
+        for (int i = labelCount - 1; i >= 0; i--) {
+            Label label = labels[i];
+            ModNetworkHandler.PlayerTrackInfo trackInfo = label.trackInfo;
+            int stringWidth = trackInfo.getCompactDisplayWidth(fontRenderer);
+
+            // Compact semi-transparent background
+            GlStateManager.disableTexture2D();
+            int left = -stringWidth / 2 - 1;
+            int right = -stringWidth / 2 + stringWidth + 1;
+            renderer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+            addCorner(renderer, label, left, 0, rightX, rightZ, downX, downY, downZ);
+            addCorner(renderer, label, right, 0, rightX, rightZ, downX, downY, downZ);
+            addCorner(renderer, label, right, -9, rightX, rightZ, downX, downY, downZ);
+            addCorner(renderer, label, left, -9, rightX, rightZ, downX, downY, downZ);
+            tessellator.draw();
+            GlStateManager.enableTexture2D();
+
+            GlStateManager.pushMatrix();
+            GlStateManager.translate((float) label.x, (float) label.y, (float) label.z);
+            GlStateManager.rotate(-viewY, 0.0F, 1.0F, 0.0F);
+            GlStateManager.rotate(viewX, 1.0F, 0.0F, 0.0F);
+            GlStateManager.scale(-SCALE, -SCALE, SCALE);
+            // Orange for paused
+            fontRenderer.drawString(trackInfo.getCompactDisplay(), -stringWidth / 2, -8,
+                    trackInfo.isPlaying ? playingColor : 0xFFAA00);
+            GlStateManager.popMatrix();
+
+            label.trackInfo = null;
         }
-        
-        fontRenderer.drawString(display, xPos, -8, color);
-        
+        labelCount = 0;
+
         GlStateManager.enableDepth();
         GlStateManager.depthMask(true);
         GlStateManager.enableLighting();
         GlStateManager.disableBlend();
         GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
-        GlStateManager.popMatrix();
     }
-    
-    private void drawRect(int left, int top, int right, int bottom, int color) {
-        net.minecraft.client.gui.Gui.drawRect(left, top, right, bottom, color);
+
+    private static void addCorner(WorldRenderer renderer, Label label, int x, int y,
+                                  double rightX, double rightZ, double downX, double downY, double downZ) {
+        renderer.pos(label.x + x * rightX + y * downX, label.y + y * downY, label.z + x * rightZ + y * downZ)
+                .color(0, 0, 0, 0x50).endVertex();
     }
 }
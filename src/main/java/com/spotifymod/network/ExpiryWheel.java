@@ -0,0 +1,148 @@
+package com.spotifymod.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel of expiry deadlines, one per key.
+ * Deadlines are {@link System#nanoTime()} values. Each slot covers one tick
+ * and holds a linked list of the keys due in it, so scheduling, rescheduling
+ * and removing are O(1) and {@link #expire} only visits the slots that have
+ * come due since the last call. Not thread-safe.
+ */
+public class ExpiryWheel<K> {
+    private final long tickNanos;
+    private final Node<K>[] slots;
+    private final int mask;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    // Ticks are counted from here so they stay positive
+    private final long origin = System.nanoTime();
+    private long currentTick = 0;
+
+    private static class Node<K> {
+        final K key;
+        long deadline;
+        Node<K> prev;
+        Node<K> next;
+        int slot;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * @param slotCount power of two; the wheel spans slotCount * tickNanos, and
+     *                  longer deadlines just stay put for extra rounds
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiryWheel(int slotCount, long tickNanos) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slotCount must be a power of two");
+        }
+        this.tickNanos = tickNanos;
+        this.slots = new Node[slotCount];
+        this.mask = slotCount - 1;
+    }
+
+    /** Set or move the key's deadline. */
+    public void schedule(K key, long deadline) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+        } else {
+            unlink(node);
+        }
+        node.deadline = deadline;
+        link(node, (int) (Math.max(currentTick, tickOf(deadline)) & mask));
+    }
+
+    public void remove(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Remove every key whose deadline has passed and hand it to {@code expired}.
+     */
+    public void expire(long now, Consumer<K> expired) {
+        long targetTick = tickOf(now);
+        long first = targetTick - currentTick >= slots.length ? targetTick - mask : currentTick;
+        for (long tick = first; tick <= targetTick; tick++) {
+            Node<K> node = slots[(int) (tick & mask)];
+            while (node != null) {
+                Node<K> next = node.next;
+                if (node.deadline - now <= 0) {
+                    nodes.remove(node.key);
+                    unlink(node);
+                    expired.accept(node.key);
+                }
+                node = next;
+            }
+        }
+        // The current slot may still hold deadlines later in this tick
+        currentTick = targetTick;
+    }
+
+    /**
+     * The key with the earliest deadline, or null if the wheel is empty.
+     */
+    public K peekEarliest() {
+        // Walk the slots in due order, skipping keys that are a full round or more away
+        for (int i = 0; i <= mask; i++) {
+            long tick = currentTick + i;
+            Node<K> earliest = null;
+            for (Node<K> node = slots[(int) (tick & mask)]; node != null; node = node.next) {
+                if (tickOf(node.deadline) <= tick && (earliest == null || node.deadline - earliest.deadline < 0)) {
+                    earliest = node;
+                }
+            }
+            if (earliest != null) {
+                return earliest.key;
+            }
+        }
+        // Everything is more than a round away
+        Node<K> earliest = null;
+        for (Node<K> node : nodes.values()) {
+            if (earliest == null || node.deadline - earliest.deadline < 0) {
+                earliest = node;
+            }
+        }
+        return earliest != null ? earliest.key : null;
+    }
+
+    private long tickOf(long time) {
+        return (time - origin) / tickNanos;
+    }
+
+    private void link(Node<K> node, int slot) {
+        node.slot = slot;
+        node.prev = null;
+        node.next = slots[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[slot] = node;
+    }
+
+    private void unlink(Node<K> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            slots[node.slot] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+}
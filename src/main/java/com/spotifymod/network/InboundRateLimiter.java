@@ -0,0 +1,89 @@
+package com.spotifymod.network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets for packets from other mod users.
+ * One global bucket bounds the work all senders together can cause, and each
+ * sender UUID gets its own smaller bucket so one noisy client can't use up
+ * the global budget for everyone else. Sender buckets are kept in an LRU
+ * map of bounded size, so rotating UUIDs can't grow it either. Listening-party
+ * packets have buckets of their own, since a party host streams snapshots
+ * faster than any track update is allowed.
+ */
+public class InboundRateLimiter {
+    // A well-behaved sender: a heartbeat every ~10s, changes at most 4/s, handshake replies 1/s
+    private static final double SENDER_CAPACITY = 8;
+    private static final double SENDER_REFILL_PER_SECOND = 2;
+    // A full lobby answering a handshake at once, then a steady trickle
+    private static final double GLOBAL_CAPACITY = 300;
+    private static final double GLOBAL_REFILL_PER_SECOND = 100;
+    // A party host: snapshots at 2/s, roster announcements, and pongs to us
+    private static final double PARTY_SENDER_CAPACITY = 12;
+    private static final double PARTY_SENDER_REFILL_PER_SECOND = 4;
+    private static final int MAX_SENDERS = 512;
+
+    private static class Bucket {
+        double tokens;
+        long lastRefill;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        boolean tryTake(long now, double capacity, double refillPerSecond) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1) * refillPerSecond);
+            lastRefill = now;
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    private final Bucket global = new Bucket(GLOBAL_CAPACITY, System.nanoTime());
+    private final Map<UUID, Bucket> senders = newSenderMap();
+    private final Map<UUID, Bucket> partySenders = newSenderMap();
+
+    private static Map<UUID, Bucket> newSenderMap() {
+        return new LinkedHashMap<UUID, Bucket>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Bucket> eldest) {
+                return size() > MAX_SENDERS;
+            }
+        };
+    }
+
+    /** Whether any packet may be processed right now; checked before parsing. */
+    public synchronized boolean tryAcquireGlobal(long now) {
+        return global.tryTake(now, GLOBAL_CAPACITY, GLOBAL_REFILL_PER_SECOND);
+    }
+
+    /** Whether this sender may have another packet processed. */
+    public synchronized boolean tryAcquire(UUID sender, long now) {
+        return tryTake(senders, sender, now, SENDER_CAPACITY, SENDER_REFILL_PER_SECOND);
+    }
+
+    /** Whether this sender may have another party packet processed. */
+    public synchronized boolean tryAcquireParty(UUID sender, long now) {
+        return tryTake(partySenders, sender, now, PARTY_SENDER_CAPACITY, PARTY_SENDER_REFILL_PER_SECOND);
+    }
+
+    private static boolean tryTake(Map<UUID, Bucket> buckets, UUID sender, long now,
+                                   double capacity, double refillPerSecond) {
+        Bucket bucket = buckets.get(sender);
+        if (bucket == null) {
+            bucket = new Bucket(capacity, now);
+            buckets.put(sender, bucket);
+        }
+        return bucket.tryTake(now, capacity, refillPerSecond);
+    }
+
+    public synchronized void clear() {
+        senders.clear();
+        partySenders.clear();
+    }
+}
@@ -3,9 +3,13 @@ package com.spotifymod.network;
 import com.spotifymod.SpotifyMod;
 import com.spotifymod.api.SpotifyAPI;
 import com.spotifymod.debug.LogBuffer;
+import com.spotifymod.playback.PlaybackListener;
+import com.spotifymod.playback.PlaybackSnapshot;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.FontRenderer;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.client.C17PacketCustomPayload;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
@@ -14,41 +18,190 @@ import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Handles network communication between mod users to share currently playing tracks.
  * Uses custom payload packets that work on any server without server-side mod.
+ *
+ * Protocol version 2 sends a track's names once, in a full update, when the
+ * track changes or a new mod user says hello; every other update is a delta
+ * of about ten bytes carrying the play state and position, addressed by a
+ * random per-connection tag instead of the UUID. The handshake carries the
+ * protocol version; once a version 1 client (a bare handshake) shows up we
+ * fall back to version 1 updates, which everyone can read.
+ *
+ * Listening parties share the channel; see {@link PartyProtocol}.
  */
-public class ModNetworkHandler {
+public class ModNetworkHandler implements PlaybackListener {
     private static final String CHANNEL = "spotifymod";
+    private static final byte PROTOCOL_VERSION = 2;
     private static final byte PACKET_HANDSHAKE = 1;
+    private static final byte[] HANDSHAKE_PACKET = {PACKET_HANDSHAKE, PROTOCOL_VERSION};
+    // Version 1: UUID, play state, artist and name, every time
     private static final byte PACKET_TRACK_UPDATE = 2;
+    // Version 2: UUID, tag, track and names
+    private static final byte PACKET_TRACK_FULL = 3;
+    // Version 2: tag, play state and position on the last full update's track
+    private static final byte PACKET_TRACK_DELTA = 4;
+    private static final int FLAG_PLAYING = 1;
+    private static final int FLAG_TRACK_ID = 2;
     
-    // Store track info for each player UUID
+    // Store track info for each player UUID; written under the expiry lock
     private final Map<UUID, PlayerTrackInfo> playerTracks = new ConcurrentHashMap<>();
+    // When each entry of playerTracks goes stale
+    private final ExpiryWheel<UUID> expiry = new ExpiryWheel<>(64, TimeUnit.MILLISECONDS.toNanos(250));
+    private static final long TRACK_TTL_NANOS = TimeUnit.SECONDS.toNanos(15);
+    // Beyond this, a new player replaces the one we heard from least recently
+    private static final int MAX_TRACKED_PLAYERS = 256;
+    // Packets keep naming the same few tracks; these return the copy we already have
+    private final StringInterner names = new StringInterner(1024,
+            (buf, index, length) -> buf.toString(index, length, StandardCharsets.UTF_8));
+    private final StringInterner trackIds = new StringInterner(512,
+            (buf, index, length) -> TrackCodec.getTrackId(buf, index));
+    
+    private final InboundRateLimiter rateLimiter = new InboundRateLimiter();
+    private final AtomicLong droppedFlood = new AtomicLong();
+    private final AtomicLong droppedRateLimited = new AtomicLong();
+    private final AtomicLong droppedMalformed = new AtomicLong();
+    private final AtomicLong evictedPlayers = new AtomicLong();
+    // Longest position or duration we accept, in seconds
+    private static final int MAX_TRACK_SECONDS = 24 * 60 * 60;
+    
+    // Version 2 sender tag -> player UUID, learned from full updates
+    private final Map<Integer, UUID> peerTags = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+    private final PartyProtocol partyProtocol = new PartyProtocol(this);
+    private volatile int localTag = random.nextInt();
+    private volatile boolean legacyPeerSeen = false;
+    // What our last update described; guarded by this
+    private SpotifyAPI.TrackInfo lastSentTrack;
+    private int trackSeq = 0;
+    // Every outgoing packet is encoded here, then copied out at its exact size
+    // (see finishPacket); guarded by this
+    private final ByteBuf encodeBuffer = PooledByteBufAllocator.DEFAULT.heapBuffer(256);
+    // Last full update we sent and the snapshot track it encoded; guarded by this
+    private byte[] lastFullPacket;
+    private SpotifyAPI.TrackInfo lastFullPacketTrack;
+    private boolean lastFullPacketLegacy;
+    
+    // Handshakes are answered together, once per window: 0 when no reply is due
+    private final AtomicLong handshakeReplyAt = new AtomicLong();
+    private long lastHandshakeReply = 0;
+    private static final long HANDSHAKE_REPLY_DELAY_MIN = 500;
+    private static final long HANDSHAKE_REPLY_DELAY_JITTER = 1500;
+    // At most one reply per second, however many users join
+    private static final long HANDSHAKE_REPLY_INTERVAL = 1000;
+    // Client thread only
     private long lastBroadcast = 0;
-    private static final long BROADCAST_INTERVAL = 5000; // 5 seconds
+    private long nextHeartbeatAt = 0;
+    private boolean broadcastPending = false;
+    // Liveness resend when nothing changed; receivers drop us after 15 seconds
+    private static final long HEARTBEAT_MIN = 8000;
+    private static final long HEARTBEAT_JITTER = 4000;
+    // Collapses bursts such as an optimistic pause followed by its confirmation
+    private static final long MIN_BROADCAST_GAP = 250;
+    // Every Nth heartbeat is a full update (~30s), for receivers that missed,
+    // evicted or expired ours and so can't use deltas
+    private static final int FULL_HEARTBEAT_EVERY = 3;
+    private int heartbeatCount = 0;
     
     public static class PlayerTrackInfo {
         public final String artist;
         public final String track;
         public final boolean isPlaying;
-        public final long timestamp;
+        // Spotify track ID, or null for local files and version 1 senders
+        public final String trackId;
+        public final int durationMs;
+        // Refreshed in place by updates that change nothing else
+        private volatile int progressMs;
+        // System.nanoTime() after which this is stale
+        private volatile long expiresAt;
+        // Which full update of its sender this belongs to, -1 for version 1
+        final int trackSeq;
+        // Sender's tag when trackSeq is set
+        final int peerTag;
+        
+        // Render-thread caches
+        private String compactDisplay;
+        private FontRenderer widthFontRenderer;
+        private int compactDisplayWidth;
         
         public PlayerTrackInfo(String artist, String track, boolean isPlaying) {
+            this(artist, track, isPlaying, null, 0, 0, -1, 0);
+        }
+        
+        PlayerTrackInfo(String artist, String track, boolean isPlaying, String trackId,
+                        int progressMs, int durationMs, int trackSeq, int peerTag) {
             this.artist = artist;
             this.track = track;
             this.isPlaying = isPlaying;
-            this.timestamp = System.currentTimeMillis();
+            this.trackId = trackId;
+            this.progressMs = progressMs;
+            this.durationMs = durationMs;
+            this.trackSeq = trackSeq;
+            this.peerTag = peerTag;
+            this.expiresAt = System.nanoTime() + TRACK_TTL_NANOS;
+        }
+        
+        PlayerTrackInfo withPlayState(boolean isPlaying, int progressMs) {
+            PlayerTrackInfo updated = new PlayerTrackInfo(artist, track, isPlaying, trackId, progressMs, durationMs, trackSeq, peerTag);
+            if (isPlaying == this.isPlaying) {
+                // Same text, keep what the renderer already built
+                updated.compactDisplay = compactDisplay;
+                updated.widthFontRenderer = widthFontRenderer;
+                updated.compactDisplayWidth = compactDisplayWidth;
+            }
+            return updated;
+        }
+        
+        // Packet thread, under the expiry lock
+        void refresh(int progressMs) {
+            this.progressMs = progressMs;
+            this.expiresAt = System.nanoTime() + TRACK_TTL_NANOS;
+        }
+        
+        /** Position the sender last reported, in ms; version 2 sends whole seconds, so it is a multiple of 1000. */
+        public int getProgressMs() {
+            return progressMs;
         }
         
         public boolean isStale() {
-            return System.currentTimeMillis() - timestamp > 15000; // 15 seconds
+            return isStale(System.nanoTime());
+        }
+        
+        /** @param now a {@link System#nanoTime()} value */
+        public boolean isStale(long now) {
+            return now - expiresAt >= 0;
         }
         
         public String getCompactDisplay() {
+            // Built once; a new update replaces the whole object
+            String display = compactDisplay;
+            if (display == null) {
+                display = buildCompactDisplay();
+                compactDisplay = display;
+            }
+            return display;
+        }
+        
+        /**
+         * Width of {@link #getCompactDisplay()}, measured once per font renderer.
+         */
+        public int getCompactDisplayWidth(FontRenderer fontRenderer) {
+            if (fontRenderer != widthFontRenderer) {
+                compactDisplayWidth = fontRenderer.getStringWidth(getCompactDisplay());
+                widthFontRenderer = fontRenderer;
+            }
+            return compactDisplayWidth;
+        }
+        
+        private String buildCompactDisplay() {
             if (!isPlaying) return "[Paused]";
             
             // More compact format - shorten both if needed
@@ -80,7 +233,15 @@ public class ModNetworkHandler {
     @SubscribeEvent
     public void onClientDisconnection(FMLNetworkEvent.ClientDisconnectionFromServerEvent event) {
         LogBuffer.get().info("Disconnected - clearing player track cache");
-        playerTracks.clear();
+        clearPlayerTracks();
+        rateLimiter.clear();
+        legacyPeerSeen = false;
+        handshakeReplyAt.set(0);
+        synchronized (this) {
+            lastSentTrack = null;
+            lastFullPacket = null;
+            lastFullPacketTrack = null;
+        }
     }
     
     /**
@@ -91,6 +252,11 @@ public class ModNetworkHandler {
         FMLProxyPacket packet = event.packet;
         if (!packet.channel().equals(CHANNEL)) return;
         
+        if (!rateLimiter.tryAcquireGlobal(System.nanoTime())) {
+            droppedFlood.incrementAndGet();
+            return;
+        }
+        
         ByteBuf buf = packet.payload();
         try {
             byte packetType = buf.readByte();
@@ -99,100 +265,406 @@ public class ModNetworkHandler {
                 handleHandshake(buf);
             } else if (packetType == PACKET_TRACK_UPDATE) {
                 handleTrackUpdate(buf);
+            } else if (packetType == PACKET_TRACK_FULL) {
+                handleTrackFull(buf);
+            } else if (packetType == PACKET_TRACK_DELTA) {
+                handleTrackDelta(buf);
+            } else {
+                partyProtocol.handle(packetType, buf);
             }
         } catch (Exception e) {
-            LogBuffer.get().error("Error handling packet: " + e.getMessage());
+            // Counted rather than logged as an error: a bad client could send these all day
+            droppedMalformed.incrementAndGet();
+            LogBuffer.get().trace("Dropped malformed packet: " + e.getMessage());
         }
     }
     
+    // Per-sender check, done before anything is allocated for the packet's contents
+    private boolean acceptFrom(UUID sender) {
+        if (rateLimiter.tryAcquire(sender, System.nanoTime())) {
+            return true;
+        }
+        droppedRateLimited.incrementAndGet();
+        return false;
+    }
+    
+    // Same for listening-party packets, which have their own budget
+    boolean acceptPartyFrom(UUID sender) {
+        if (rateLimiter.tryAcquireParty(sender, System.nanoTime())) {
+            return true;
+        }
+        droppedRateLimited.incrementAndGet();
+        return false;
+    }
+    
+    private static int readSecondsAsMs(ByteBuf buf) {
+        int seconds = TrackCodec.readVarInt(buf);
+        if (seconds < 0 || seconds > MAX_TRACK_SECONDS) {
+            throw new IllegalArgumentException("Bad time " + seconds);
+        }
+        return seconds * 1000;
+    }
+    
     private void handleHandshake(ByteBuf buf) {
-        // Another mod user connected - send our current track
+        // Version 1 handshakes are just the packet type
+        int version = buf.isReadable() ? buf.readByte() : 1;
+        if (version < PROTOCOL_VERSION && !legacyPeerSeen) {
+            LogBuffer.get().info("Mod user on protocol " + version + " joined - sending version 1 updates");
+            legacyPeerSeen = true;
+        }
+        
+        // Another mod user connected - they get our track in full with the next
+        // reply, which also covers everyone else joining before it goes out
         LogBuffer.get().trace("Received handshake from mod user");
-        broadcastCurrentTrack();
+        long delay = HANDSHAKE_REPLY_DELAY_MIN + (long) (random.nextDouble() * HANDSHAKE_REPLY_DELAY_JITTER);
+        handshakeReplyAt.compareAndSet(0, System.currentTimeMillis() + delay);
     }
     
     private void handleTrackUpdate(ByteBuf buf) {
-        try {
-            // Read UUID
-            long mostSig = buf.readLong();
-            long leastSig = buf.readLong();
-            UUID playerUUID = new UUID(mostSig, leastSig);
-            
-            // Read track info
-            boolean isPlaying = buf.readBoolean();
-            String artist = readString(buf);
-            String track = readString(buf);
-            
-            playerTracks.put(playerUUID, new PlayerTrackInfo(artist, track, isPlaying));
-            LogBuffer.get().trace("Updated track for player: " + artist + " - " + track);
-        } catch (Exception e) {
-            LogBuffer.get().error("Error reading track update: " + e.getMessage());
+        // Read UUID
+        long mostSig = buf.readLong();
+        long leastSig = buf.readLong();
+        UUID playerUUID = new UUID(mostSig, leastSig);
+        if (!acceptFrom(playerUUID)) return;
+        
+        // Read track info
+        boolean isPlaying = buf.readBoolean();
+        String artist = readString(buf);
+        String track = readString(buf);
+        
+        // Interned, so unchanged names are the same instances
+        PlayerTrackInfo previous = playerTracks.get(playerUUID);
+        if (previous != null && previous.trackSeq < 0 && previous.artist == artist
+                && previous.track == track && previous.isPlaying == isPlaying) {
+            refreshPlayerTrack(playerUUID, previous, 0);
+            return;
+        }
+        storePlayerTrack(playerUUID, new PlayerTrackInfo(artist, track, isPlaying));
+        LogBuffer.get().trace("Updated track for player: " + artist + " - " + track);
+    }
+    
+    private void handleTrackFull(ByteBuf buf) {
+        UUID playerUUID = new UUID(buf.readLong(), buf.readLong());
+        if (!acceptFrom(playerUUID)) return;
+        int tag = buf.readInt();
+        int seq = buf.readUnsignedByte();
+        int flags = buf.readUnsignedByte();
+        int progressMs = readSecondsAsMs(buf);
+        int durationMs = readSecondsAsMs(buf);
+        String trackId = (flags & FLAG_TRACK_ID) != 0
+                ? trackIds.read(buf, TrackCodec.PACKED_TRACK_ID_BYTES) : null;
+        String artist = TrackCodec.readString(buf, names);
+        String track = TrackCodec.readString(buf, names);
+        boolean isPlaying = (flags & FLAG_PLAYING) != 0;
+        
+        // Handshake replies and repeats: interned strings make this a reference check
+        PlayerTrackInfo previous = playerTracks.get(playerUUID);
+        if (previous != null && previous.trackSeq == seq && previous.peerTag == tag
+                && previous.isPlaying == isPlaying && previous.trackId == trackId
+                && previous.artist == artist && previous.track == track && previous.durationMs == durationMs) {
+            refreshPlayerTrack(playerUUID, previous, progressMs);
+            return;
+        }
+        
+        peerTags.put(tag, playerUUID);
+        storePlayerTrack(playerUUID, new PlayerTrackInfo(artist, track, isPlaying,
+                trackId, progressMs, durationMs, seq, tag));
+        LogBuffer.get().trace("Updated track for player: " + artist + " - " + track);
+    }
+    
+    private void handleTrackDelta(ByteBuf buf) {
+        int tag = buf.readInt();
+        int seq = buf.readUnsignedByte();
+        int flags = buf.readUnsignedByte();
+        int progressMs = readSecondsAsMs(buf);
+        
+        UUID playerUUID = peerTags.get(tag);
+        if (playerUUID == null || !acceptFrom(playerUUID)) return;
+        PlayerTrackInfo previous = playerTracks.get(playerUUID);
+        if (previous == null || previous.trackSeq != seq) {
+            // We missed the full update this refers to; the sender repeats it every few heartbeats
+            return;
+        }
+        boolean isPlaying = (flags & FLAG_PLAYING) != 0;
+        if (isPlaying == previous.isPlaying) {
+            refreshPlayerTrack(playerUUID, previous, progressMs);
+        } else {
+            storePlayerTrack(playerUUID, previous.withPlayState(isPlaying, progressMs));
+        }
+    }
+    
+    /**
+     * An update that changed nothing but the position: move the existing
+     * entry's deadline instead of replacing it.
+     */
+    private void refreshPlayerTrack(UUID playerUUID, PlayerTrackInfo info, int progressMs) {
+        synchronized (expiry) {
+            info.refresh(progressMs);
+            if (playerTracks.get(playerUUID) != info) {
+                // Expired or evicted since we looked it up
+                storePlayerTrack(playerUUID, info);
+            } else {
+                expiry.schedule(playerUUID, info.expiresAt);
+            }
+        }
+    }
+    
+    private void storePlayerTrack(UUID playerUUID, PlayerTrackInfo info) {
+        synchronized (expiry) {
+            if (!playerTracks.containsKey(playerUUID) && expiry.size() >= MAX_TRACKED_PLAYERS) {
+                // Earliest deadline = the player we heard from least recently
+                forgetPlayer(expiry.peekEarliest());
+                evictedPlayers.incrementAndGet();
+            }
+            PlayerTrackInfo previous = playerTracks.put(playerUUID, info);
+            if (previous != null && previous.trackSeq >= 0 && (info.trackSeq < 0 || previous.peerTag != info.peerTag)) {
+                // Reconnected with a new tag
+                peerTags.remove(previous.peerTag, playerUUID);
+            }
+            expiry.schedule(playerUUID, info.expiresAt);
+        }
+    }
+    
+    // Must hold the expiry lock
+    private void forgetPlayer(UUID playerUUID) {
+        expiry.remove(playerUUID);
+        PlayerTrackInfo removed = playerTracks.remove(playerUUID);
+        if (removed != null && removed.trackSeq >= 0) {
+            peerTags.remove(removed.peerTag, playerUUID);
+        }
+    }
+    
+    private void clearPlayerTracks() {
+        synchronized (expiry) {
+            for (UUID playerUUID : playerTracks.keySet()) {
+                expiry.remove(playerUUID);
+            }
+            playerTracks.clear();
+            peerTags.clear();
         }
     }
     
     private void sendHandshake() {
-        ByteBuf buf = Unpooled.buffer();
-        buf.writeByte(PACKET_HANDSHAKE);
-        sendPacket(buf);
+        // New tag per connection, so stale deltas from a previous session can't match
+        localTag = random.nextInt();
+        sendPacket(HANDSHAKE_PACKET);
     }
     
     public void broadcastCurrentTrack() {
+        broadcastCurrentTrack(false);
+    }
+    
+    /**
+     * Send our track: a full update if it changed since the last one (or
+     * {@code full} is set), otherwise a delta.
+     */
+    public synchronized void broadcastCurrentTrack(boolean full) {
         SpotifyAPI api = SpotifyMod.instance.getSpotifyAPI();
         if (!api.isAuthenticated()) return;
         
-        api.getCurrentTrack().thenAccept(trackInfo -> {
-            if (trackInfo == null) return;
-            
-            try {
-                ByteBuf buf = Unpooled.buffer();
-                buf.writeByte(PACKET_TRACK_UPDATE);
-                
-                // Write our UUID
-                UUID uuid = Minecraft.getMinecraft().thePlayer.getUniqueID();
-                buf.writeLong(uuid.getMostSignificantBits());
-                buf.writeLong(uuid.getLeastSignificantBits());
-                
-                // Write track info
-                buf.writeBoolean(trackInfo.isPlaying);
-                writeString(buf, trackInfo.artist);
-                writeString(buf, trackInfo.name);
-                
-                sendPacket(buf);
-                LogBuffer.get().trace("Broadcasted track: " + trackInfo.artist + " - " + trackInfo.name);
-            } catch (Exception e) {
-                LogBuffer.get().error("Error broadcasting track: " + e.getMessage());
+        // Reuse the shared playback snapshot instead of fetching our own
+        PlaybackSnapshot snapshot = SpotifyMod.instance.getPlaybackService().getSnapshot();
+        SpotifyAPI.TrackInfo trackInfo = snapshot.track;
+        if (trackInfo == null) return;
+        if (Minecraft.getMinecraft().thePlayer == null) return;
+        
+        try {
+            UUID uuid = Minecraft.getMinecraft().thePlayer.getUniqueID();
+            if (legacyPeerSeen) {
+                sendLegacyTrackUpdate(uuid, trackInfo);
+            } else {
+                int progressSeconds = snapshot.estimatePositionMs(System.currentTimeMillis()) / 1000;
+                if (!trackInfo.isSameTrack(lastSentTrack)) {
+                    trackSeq = (trackSeq + 1) & 0xFF;
+                    full = true;
+                }
+                if (full) {
+                    sendTrackFull(uuid, trackInfo, progressSeconds);
+                } else {
+                    sendTrackDelta(trackInfo, progressSeconds);
+                }
             }
-        });
+            lastSentTrack = trackInfo;
+            LogBuffer.get().trace("Broadcasted track: " + trackInfo.artist + " - " + trackInfo.name);
+        } catch (Exception e) {
+            LogBuffer.get().error("Error broadcasting track: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Answer the handshakes received since the last reply with our track in
+     * full, resending the bytes of the last full update if the track hasn't
+     * been polled again since.
+     */
+    private synchronized void replyToHandshakes() {
+        PlaybackSnapshot snapshot = SpotifyMod.instance.getPlaybackService().getSnapshot();
+        if (snapshot.track == null) return;
+        if (lastFullPacket != null && snapshot.track == lastFullPacketTrack
+                && lastFullPacketLegacy == legacyPeerSeen) {
+            sendPacket(lastFullPacket);
+            LogBuffer.get().trace("Answered handshakes with cached track update");
+        } else {
+            broadcastCurrentTrack(true);
+        }
+    }
+    
+    // Must hold the lock
+    private ByteBuf beginPacket(byte packetType) {
+        encodeBuffer.clear();
+        encodeBuffer.writeByte(packetType);
+        return encodeBuffer;
+    }
+    
+    // Must hold the lock. The copy can't be avoided under 1.8.9: C17PacketCustomPayload
+    // keeps the buffer it is given and never releases it, and reads it later on the
+    // netty thread (or, on the integrated server's local connection, whenever the
+    // server thread gets to the packet object). A slice of encodeBuffer would be
+    // overwritten by the next packet first, and a pooled copy would never go back to
+    // the pool. So each packet gets one exact-size array for the GC to reclaim.
+    private byte[] finishPacket() {
+        byte[] bytes = new byte[encodeBuffer.readableBytes()];
+        encodeBuffer.getBytes(encodeBuffer.readerIndex(), bytes);
+        return bytes;
+    }
+    
+    // Must hold the lock; the same bytes serve later handshake replies
+    private void sendFullPacket(byte[] bytes, SpotifyAPI.TrackInfo trackInfo) {
+        lastFullPacket = bytes;
+        lastFullPacketTrack = trackInfo;
+        lastFullPacketLegacy = bytes[0] == PACKET_TRACK_UPDATE;
+        sendPacket(bytes);
+    }
+    
+    private void sendLegacyTrackUpdate(UUID uuid, SpotifyAPI.TrackInfo trackInfo) {
+        ByteBuf buf = beginPacket(PACKET_TRACK_UPDATE);
+        
+        // Write our UUID
+        buf.writeLong(uuid.getMostSignificantBits());
+        buf.writeLong(uuid.getLeastSignificantBits());
+        
+        // Write track info
+        buf.writeBoolean(trackInfo.isPlaying);
+        writeString(buf, trackInfo.artist);
+        writeString(buf, trackInfo.name);
+        
+        sendFullPacket(finishPacket(), trackInfo);
+    }
+    
+    private void sendTrackFull(UUID uuid, SpotifyAPI.TrackInfo trackInfo, int progressSeconds) {
+        boolean packId = TrackCodec.isPackable(trackInfo.id);
+        ByteBuf buf = beginPacket(PACKET_TRACK_FULL);
+        buf.writeLong(uuid.getMostSignificantBits());
+        buf.writeLong(uuid.getLeastSignificantBits());
+        buf.writeInt(localTag);
+        buf.writeByte(trackSeq);
+        buf.writeByte((trackInfo.isPlaying ? FLAG_PLAYING : 0) | (packId ? FLAG_TRACK_ID : 0));
+        TrackCodec.writeVarInt(buf, progressSeconds);
+        TrackCodec.writeVarInt(buf, trackInfo.durationMs / 1000);
+        if (packId) {
+            TrackCodec.writeTrackId(buf, trackInfo.id);
+        }
+        TrackCodec.writeString(buf, trackInfo.artist);
+        TrackCodec.writeString(buf, trackInfo.name);
+        sendFullPacket(finishPacket(), trackInfo);
+    }
+    
+    private void sendTrackDelta(SpotifyAPI.TrackInfo trackInfo, int progressSeconds) {
+        ByteBuf buf = beginPacket(PACKET_TRACK_DELTA);
+        buf.writeInt(localTag);
+        buf.writeByte(trackSeq);
+        buf.writeByte(trackInfo.isPlaying ? FLAG_PLAYING : 0);
+        TrackCodec.writeVarInt(buf, progressSeconds);
+        sendPacket(finishPacket());
+    }
+    
+    /**
+     * Encode a packet in the shared buffer and send it.
+     */
+    synchronized void sendEncoded(byte packetType, Consumer<ByteBuf> body) {
+        try {
+            body.accept(beginPacket(packetType));
+            sendPacket(finishPacket());
+        } catch (Exception e) {
+            LogBuffer.get().error("Error encoding packet " + packetType + ": " + e.getMessage());
+        }
     }
     
-    private void sendPacket(ByteBuf buf) {
+    // The array is never written again, so one can back any number of packets
+    private void sendPacket(byte[] bytes) {
         try {
-            C17PacketCustomPayload packet = new C17PacketCustomPayload(CHANNEL, new PacketBuffer(buf));
+            C17PacketCustomPayload packet = new C17PacketCustomPayload(CHANNEL, new PacketBuffer(Unpooled.wrappedBuffer(bytes)));
             Minecraft.getMinecraft().getNetHandler().addToSendQueue(packet);
         } catch (Exception e) {
             LogBuffer.get().error("Error sending packet: " + e.getMessage());
         }
     }
     
+    @Override
+    public void onTrackChanged(PlaybackSnapshot previous, PlaybackSnapshot current) {
+        broadcastPending = true;
+    }
+    
+    @Override
+    public void onPlayStateChanged(PlaybackSnapshot current) {
+        broadcastPending = true;
+    }
+    
+    @Override
+    public void onProgressJump(PlaybackSnapshot current, int expectedPositionMs) {
+        broadcastPending = true;
+    }
+    
+    /**
+     * Called every client tick. Sends changes as soon as the playback service
+     * publishes them, and otherwise a heartbeat every 8-12 seconds.
+     */
     public void tick() {
         long now = System.currentTimeMillis();
         
-        // Broadcast our track every 5 seconds
-        if (now - lastBroadcast > BROADCAST_INTERVAL) {
-            broadcastCurrentTrack();
-            lastBroadcast = now;
+        if (isBroadcasting()) {
+            boolean changed = broadcastPending && now - lastBroadcast >= MIN_BROADCAST_GAP;
+            if (changed || now >= nextHeartbeatAt) {
+                boolean full = !changed && ++heartbeatCount % FULL_HEARTBEAT_EVERY == 0;
+                broadcastCurrentTrack(full);
+                broadcastPending = false;
+                lastBroadcast = now;
+                // Jittered so clients that joined together don't stay in step
+                nextHeartbeatAt = now + HEARTBEAT_MIN + (long) (random.nextDouble() * HEARTBEAT_JITTER);
+            }
+        }
+        
+        long replyAt = handshakeReplyAt.get();
+        if (replyAt != 0 && now >= replyAt && now - lastHandshakeReply >= HANDSHAKE_REPLY_INTERVAL) {
+            // Handshakes arriving from here on wait for the next window
+            handshakeReplyAt.set(0);
+            lastHandshakeReply = now;
+            replyToHandshakes();
         }
         
-        // Clean up stale entries
-        playerTracks.entrySet().removeIf(entry -> entry.getValue().isStale());
+        // Drop entries whose deadline has passed; only touches the slots that came due
+        synchronized (expiry) {
+            expiry.expire(System.nanoTime(), this::forgetPlayer);
+        }
+    }
+    
+    /**
+     * Whether we are on a server where other players can receive our track.
+     */
+    public boolean isBroadcasting() {
+        Minecraft mc = Minecraft.getMinecraft();
+        return mc.thePlayer != null && mc.getNetHandler() != null && !mc.isIntegratedServerRunning();
     }
     
     public void cleanup() {
         // Clear all player track data
-        playerTracks.clear();
+        clearPlayerTracks();
         LogBuffer.get().info("Network handler cleaned up - track cache cleared");
     }
     
+    public PartyProtocol getPartyProtocol() {
+        return partyProtocol;
+    }
+    
     public PlayerTrackInfo getPlayerTrack(UUID playerUUID) {
         return playerTracks.get(playerUUID);
     }
@@ -201,16 +673,38 @@ public class ModNetworkHandler {
         return playerTracks;
     }
     
+    /** Packets dropped because all senders together exceeded the inbound budget. */
+    public long getDroppedFloodCount() {
+        return droppedFlood.get();
+    }
+    
+    /** Packets dropped because their sender exceeded its own budget. */
+    public long getDroppedRateLimitedCount() {
+        return droppedRateLimited.get();
+    }
+    
+    public long getDroppedMalformedCount() {
+        return droppedMalformed.get();
+    }
+    
+    /** Players dropped to stay under the tracked-player cap. */
+    public long getEvictedPlayerCount() {
+        return evictedPlayers.get();
+    }
+    
     private void writeString(ByteBuf buf, String str) {
-        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
-        buf.writeShort(bytes.length);
-        buf.writeBytes(bytes);
+        // Length patched in once the UTF-8 is written
+        int lengthIndex = buf.writerIndex();
+        buf.writeShort(0);
+        buf.setShort(lengthIndex, TrackCodec.writeUtf8(buf, str));
     }
     
     private String readString(ByteBuf buf) {
         short length = buf.readShort();
-        byte[] bytes = new byte[length];
-        buf.readBytes(bytes);
-        return new String(bytes, StandardCharsets.UTF_8);
+        // Checked before the interner sizes anything by it
+        if (length < 0 || length > TrackCodec.MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        return names.read(buf, length);
     }
 }
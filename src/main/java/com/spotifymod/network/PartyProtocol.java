@@ -0,0 +1,289 @@
+package com.spotifymod.network;
+
+import com.spotifymod.SpotifyMod;
+import com.spotifymod.party.ListeningParty;
+import com.spotifymod.party.PartyManager;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Listening-party packets on the mod's custom-payload channel (protocol
+ * version 2 only). The host owns the party: it announces the roster every
+ * few seconds and whenever it changes, answers join and leave requests, and
+ * streams numbered playback snapshots that members apply in order.
+ *
+ * Packets arrive on the netty thread; everything that touches party state is
+ * handed to {@link PartyManager} on the client thread. Packets that drive
+ * playback (states and pongs) and disbands name the host, and members drop
+ * them unless it is the host of the party they follow. That filters out
+ * other parties' traffic and stray packets; it is not authentication, since
+ * the channel carries no proof of who sent a packet.
+ */
+public class PartyProtocol {
+    // Host -> everyone: party ID, host, roster version, limits, name and members
+    static final byte PACKET_PARTY_ANNOUNCE = 5;
+    // Member -> host
+    static final byte PACKET_PARTY_JOIN = 6;
+    // Member -> host, or host -> everyone when the party is disbanded
+    static final byte PACKET_PARTY_LEAVE = 7;
+    // Host -> members: host, sequence number, play state, position and track
+    static final byte PACKET_PARTY_STATE = 8;
+    // Member -> host: clock probe with the member's send time
+    static final byte PACKET_PARTY_PING = 9;
+    // Host -> member: host, member, the probe's time plus the host's receive and send times
+    static final byte PACKET_PARTY_PONG = 10;
+
+    private static final int FLAG_PLAYING = 1;
+    private static final int FLAG_TRACK_ID = 2;
+    private static final int FLAG_TRACK_URI = 4;
+    private static final String TRACK_URI_PREFIX = "spotify:track:";
+    private static final int MAX_ROSTER = 16;
+    private static final int MAX_POSITION_MS = 24 * 60 * 60 * 1000;
+
+    private final ModNetworkHandler handler;
+
+    PartyProtocol(ModNetworkHandler handler) {
+        this.handler = handler;
+    }
+
+    /** Party IDs are eight hex digits, sent as an int. */
+    public static int partyKey(String partyId) {
+        return (int) Long.parseLong(partyId, 16);
+    }
+
+    public static String partyId(int partyKey) {
+        return String.format("%08X", partyKey);
+    }
+
+    // ---- Sending, from the client thread ----
+
+    public void announce(ListeningParty party) {
+        List<ListeningParty.PartyMember> members = party.getMembers();
+        handler.sendEncoded(PACKET_PARTY_ANNOUNCE, buf -> {
+            buf.writeInt(partyKey(party.getPartyId()));
+            writeUuid(buf, UUID.fromString(party.getHostProfileId()));
+            TrackCodec.writeVarInt(buf, party.getRosterVersion());
+            buf.writeByte(party.getMaxMembers());
+            TrackCodec.writeString(buf, party.getPartyName());
+            TrackCodec.writeVarInt(buf, members.size());
+            for (ListeningParty.PartyMember member : members) {
+                writeUuid(buf, UUID.fromString(member.getProfileId()));
+                TrackCodec.writeString(buf, member.getDisplayName());
+            }
+        });
+    }
+
+    public void join(String partyId, UUID self, String displayName) {
+        handler.sendEncoded(PACKET_PARTY_JOIN, buf -> {
+            buf.writeInt(partyKey(partyId));
+            writeUuid(buf, self);
+            TrackCodec.writeString(buf, displayName);
+        });
+    }
+
+    public void leave(String partyId, UUID self) {
+        handler.sendEncoded(PACKET_PARTY_LEAVE, buf -> {
+            buf.writeInt(partyKey(partyId));
+            writeUuid(buf, self);
+        });
+    }
+
+    public void state(String partyId, UUID host, int seq, String trackUri, int positionMs, boolean playing, long sentAt) {
+        handler.sendEncoded(PACKET_PARTY_STATE, buf -> {
+            String trackId = trackUri != null && trackUri.startsWith(TRACK_URI_PREFIX)
+                    ? trackUri.substring(TRACK_URI_PREFIX.length()) : null;
+            boolean packId = TrackCodec.isPackable(trackId);
+            int flags = playing ? FLAG_PLAYING : 0;
+            if (packId) {
+                flags |= FLAG_TRACK_ID;
+            } else if (trackUri != null) {
+                flags |= FLAG_TRACK_URI;
+            }
+            buf.writeInt(partyKey(partyId));
+            writeUuid(buf, host);
+            TrackCodec.writeVarInt(buf, seq);
+            buf.writeByte(flags);
+            TrackCodec.writeVarInt(buf, Math.max(0, positionMs));
+            buf.writeLong(sentAt);
+            if (packId) {
+                TrackCodec.writeTrackId(buf, trackId);
+            } else if (trackUri != null) {
+                TrackCodec.writeString(buf, trackUri);
+            }
+        });
+    }
+
+    public void ping(String partyId, UUID self, long sentAt) {
+        handler.sendEncoded(PACKET_PARTY_PING, buf -> {
+            buf.writeInt(partyKey(partyId));
+            writeUuid(buf, self);
+            buf.writeLong(sentAt);
+        });
+    }
+
+    /**
+     * Answer a ping; the send time is taken while encoding, as late as we can.
+     */
+    public void pong(String partyId, UUID host, UUID member, long pingSentAt, long pingReceivedAt) {
+        handler.sendEncoded(PACKET_PARTY_PONG, buf -> {
+            buf.writeInt(partyKey(partyId));
+            writeUuid(buf, host);
+            writeUuid(buf, member);
+            buf.writeLong(pingSentAt);
+            buf.writeLong(pingReceivedAt);
+            buf.writeLong(System.currentTimeMillis());
+        });
+    }
+
+    // ---- Receiving, on the netty thread ----
+
+    /** Handle a party packet; other packet types are ignored. */
+    void handle(byte packetType, ByteBuf buf) {
+        switch (packetType) {
+            case PACKET_PARTY_ANNOUNCE:
+                handleAnnounce(buf);
+                break;
+            case PACKET_PARTY_JOIN:
+                handleJoin(buf);
+                break;
+            case PACKET_PARTY_LEAVE:
+                handleLeave(buf);
+                break;
+            case PACKET_PARTY_STATE:
+                handleState(buf);
+                break;
+            case PACKET_PARTY_PING:
+                handlePing(buf);
+                break;
+            case PACKET_PARTY_PONG:
+                handlePong(buf);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleAnnounce(ByteBuf buf) {
+        int partyKey = buf.readInt();
+        UUID host = readUuid(buf);
+        if (!handler.acceptPartyFrom(host)) return;
+        int rosterVersion = TrackCodec.readVarInt(buf);
+        int maxMembers = buf.readUnsignedByte();
+        String name = TrackCodec.readString(buf);
+        int count = TrackCodec.readVarInt(buf);
+        if (maxMembers < 1 || maxMembers > MAX_ROSTER || count < 1 || count > maxMembers) {
+            throw new IllegalArgumentException("Bad roster size " + count + "/" + maxMembers);
+        }
+        List<ListeningParty.PartyMember> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID member = readUuid(buf);
+            String displayName = TrackCodec.readString(buf);
+            members.add(new ListeningParty.PartyMember(member.toString(), displayName, member.equals(host)));
+        }
+        String partyId = partyId(partyKey);
+        String hostId = host.toString();
+        onClientThread(manager -> manager.onPartyAnnounced(partyId, hostId, rosterVersion, maxMembers, name, members));
+    }
+
+    private void handleJoin(ByteBuf buf) {
+        int partyKey = buf.readInt();
+        // Only the host cares; everyone else drops it before reading further
+        if (!partyManager().isHosting(partyKey)) return;
+        UUID member = readUuid(buf);
+        if (!handler.acceptPartyFrom(member)) return;
+        String displayName = TrackCodec.readString(buf);
+        String memberId = member.toString();
+        onClientThread(manager -> manager.onJoinRequested(partyId(partyKey), memberId, displayName));
+    }
+
+    private void handleLeave(ByteBuf buf) {
+        int partyKey = buf.readInt();
+        // A member leaving only matters to its host, a disband only to the followers.
+        // Everyone else lets the party expire once its announcements stop
+        boolean hosting = partyManager().isHosting(partyKey);
+        if (!hosting && !partyManager().isFollowing(partyKey)) return;
+        UUID player = readUuid(buf);
+        // The host's UUID is in every announce, so a follower takes a disband
+        // only from the host it follows, the same check states get
+        if (!hosting && !partyManager().isFollowedHost(player)) return;
+        if (!handler.acceptPartyFrom(player)) return;
+        String playerId = player.toString();
+        onClientThread(manager -> manager.onLeft(partyId(partyKey), playerId));
+    }
+
+    private void handleState(ByteBuf buf) {
+        int partyKey = buf.readInt();
+        // Snapshots stream at sub-second rates; non-members stop here
+        if (!partyManager().isFollowing(partyKey)) return;
+        UUID host = readUuid(buf);
+        if (!partyManager().isFollowedHost(host) || !handler.acceptPartyFrom(host)) return;
+        int seq = TrackCodec.readVarInt(buf);
+        int flags = buf.readUnsignedByte();
+        int positionMs = TrackCodec.readVarInt(buf);
+        if (positionMs < 0 || positionMs > MAX_POSITION_MS) {
+            throw new IllegalArgumentException("Bad position " + positionMs);
+        }
+        long sentAt = buf.readLong();
+        String trackUri = null;
+        if ((flags & FLAG_TRACK_ID) != 0) {
+            trackUri = TRACK_URI_PREFIX + TrackCodec.readTrackId(buf);
+        } else if ((flags & FLAG_TRACK_URI) != 0) {
+            trackUri = TrackCodec.readString(buf);
+        }
+        boolean playing = (flags & FLAG_PLAYING) != 0;
+        String uri = trackUri;
+        onClientThread(manager -> manager.onHostState(partyId(partyKey), seq, uri, positionMs, playing, sentAt));
+    }
+
+    private void handlePing(ByteBuf buf) {
+        // Stamped on arrival, before the hop to the client thread
+        long receivedAt = System.currentTimeMillis();
+        int partyKey = buf.readInt();
+        if (!partyManager().isHosting(partyKey)) return;
+        UUID member = readUuid(buf);
+        if (!handler.acceptPartyFrom(member)) return;
+        long sentAt = buf.readLong();
+        onClientThread(manager -> manager.onPing(partyId(partyKey), member, sentAt, receivedAt));
+    }
+
+    private void handlePong(ByteBuf buf) {
+        long receivedAt = System.currentTimeMillis();
+        int partyKey = buf.readInt();
+        if (!partyManager().isFollowing(partyKey)) return;
+        UUID host = readUuid(buf);
+        UUID member = readUuid(buf);
+        // Only the pinging member can use it, and it also checks the ping's timestamp
+        if (!partyManager().isFollowedHost(host) || !partyManager().isSelf(member)
+                || !handler.acceptPartyFrom(host)) return;
+        long pingSentAt = buf.readLong();
+        long pingReceivedAt = buf.readLong();
+        long pongSentAt = buf.readLong();
+        onClientThread(manager -> manager.onPong(partyId(partyKey),
+                pingSentAt, pingReceivedAt, pongSentAt, receivedAt));
+    }
+
+    private interface ManagerTask {
+        void run(PartyManager manager);
+    }
+
+    private static void onClientThread(ManagerTask task) {
+        Minecraft.getMinecraft().addScheduledTask(() -> task.run(partyManager()));
+    }
+
+    private static PartyManager partyManager() {
+        return SpotifyMod.instance.getPartyManager();
+    }
+
+    private static void writeUuid(ByteBuf buf, UUID uuid) {
+        buf.writeLong(uuid.getMostSignificantBits());
+        buf.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(ByteBuf buf) {
+        return new UUID(buf.readLong(), buf.readLong());
+    }
+}
@@ -0,0 +1,105 @@
+package com.spotifymod.network;
+
+import io.netty.buffer.ByteBuf;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Bounded intern table for strings decoded from packets, keyed by their
+ * encoded bytes. On a crowded server most updates name tracks we have already
+ * decoded, and a hit compares the bytes in place and returns the existing
+ * String without allocating. Strings are held weakly, so the table never
+ * keeps a track alive once no player entry uses it; when the table is full,
+ * new strings replace old ones.
+ */
+public class StringInterner {
+
+    /** Turns {@code length} bytes at {@code index} into a string, without moving the reader index. */
+    public interface Decoder {
+        String decode(ByteBuf buf, int index, int length);
+    }
+
+    private static final int PROBES = 4;
+
+    private final Decoder decoder;
+    private final Entry[] table;
+    private final int mask;
+    private int nextVictim = 0;
+
+    private static class Entry {
+        final int hash;
+        final byte[] bytes;
+        final WeakReference<String> value;
+
+        Entry(int hash, byte[] bytes, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = new WeakReference<>(value);
+        }
+    }
+
+    /**
+     * @param capacity power of two
+     */
+    public StringInterner(int capacity, Decoder decoder) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.decoder = decoder;
+        this.table = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Read {@code length} bytes from the buffer and return the string they encode.
+     */
+    public synchronized String read(ByteBuf buf, int length) {
+        if (length < 0 || length > buf.readableBytes()) {
+            throw new IndexOutOfBoundsException("Bad string length " + length);
+        }
+        int index = buf.readerIndex();
+        int hash = hash(buf, index, length);
+        int free = -1;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (hash + i) & mask;
+            Entry entry = table[slot];
+            String value = entry != null ? entry.value.get() : null;
+            if (value == null) {
+                if (free < 0) free = slot;
+                continue;
+            }
+            if (entry.hash == hash && matches(entry.bytes, buf, index, length)) {
+                buf.skipBytes(length);
+                return value;
+            }
+        }
+
+        String value = decoder.decode(buf, index, length);
+        byte[] bytes = new byte[length];
+        buf.readBytes(bytes);
+        if (free < 0) {
+            // All probed slots live: evict them in turn
+            free = (hash + nextVictim) & mask;
+            nextVictim = (nextVictim + 1) % PROBES;
+        }
+        table[free] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    private static int hash(ByteBuf buf, int index, int length) {
+        int h = length;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buf.getByte(index + i);
+        }
+        // Spread the low bits, which pick the slot
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(byte[] bytes, ByteBuf buf, int index, int length) {
+        if (bytes.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != buf.getByte(index + i)) return false;
+        }
+        return true;
+    }
+}
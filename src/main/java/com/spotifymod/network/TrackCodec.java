@@ -0,0 +1,205 @@
+package com.spotifymod.network;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Field encodings for the version 2 custom-payload protocol: LEB128 varints,
+ * varint-prefixed UTF-8 strings and Spotify track IDs packed to 16 bytes.
+ */
+public final class TrackCodec {
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final int TRACK_ID_LENGTH = 22;
+    public static final int PACKED_TRACK_ID_BYTES = 16;
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+    // Longest string we are willing to read
+    static final int MAX_STRING_BYTES = 1024;
+
+    private TrackCodec() {
+    }
+
+    public static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    public static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("VarInt too long");
+    }
+
+    /**
+     * Write a varint-prefixed string. The UTF-8 goes straight into the buffer
+     * behind a one-byte length that is patched afterwards; the rare string of
+     * 128 bytes or more is moved up to make room for a longer varint.
+     */
+    public static void writeString(ByteBuf buf, String str) {
+        int lengthIndex = buf.writerIndex();
+        buf.writeByte(0);
+        int length = writeUtf8(buf, str);
+        if (length < 0x80) {
+            buf.setByte(lengthIndex, length);
+            return;
+        }
+        int extra = varIntSize(length) - 1;
+        buf.ensureWritable(extra);
+        int start = lengthIndex + 1;
+        for (int i = length - 1; i >= 0; i--) {
+            buf.setByte(start + extra + i, buf.getByte(start + i));
+        }
+        buf.writerIndex(buf.writerIndex() + extra);
+        int end = buf.writerIndex();
+        buf.writerIndex(lengthIndex);
+        writeVarInt(buf, length);
+        buf.writerIndex(end);
+    }
+
+    /**
+     * Encode a string as UTF-8 at the writer index, without an intermediate array.
+     * Unpaired surrogates become '?', as in {@link String#getBytes}.
+     * @return the number of bytes written
+     */
+    public static int writeUtf8(ByteBuf buf, CharSequence str) {
+        int start = buf.writerIndex();
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buf.writeByte(c);
+            } else if (c < 0x800) {
+                buf.writeByte(0xC0 | (c >> 6));
+                buf.writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                buf.writeByte(0xF0 | (codePoint >> 18));
+                buf.writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                buf.writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                buf.writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf.writeByte('?');
+            } else {
+                buf.writeByte(0xE0 | (c >> 12));
+                buf.writeByte(0x80 | ((c >> 6) & 0x3F));
+                buf.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        return buf.writerIndex() - start;
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static String readString(ByteBuf buf) {
+        int length = readVarInt(buf);
+        if (length < 0 || length > MAX_STRING_BYTES || length > buf.readableBytes()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        // Decoded from the buffer's own memory, no intermediate copy
+        String str = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        return str;
+    }
+
+    /**
+     * Like {@link #readString(ByteBuf)}, but returns the interned copy of strings seen before.
+     */
+    public static String readString(ByteBuf buf, StringInterner interner) {
+        int length = readVarInt(buf);
+        if (length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        return interner.read(buf, length);
+    }
+
+    /**
+     * Whether {@link #writeTrackId} can pack this ID. Local files have none,
+     * and anything that isn't a 22-character base62 string doesn't fit.
+     */
+    public static boolean isPackable(String trackId) {
+        if (trackId == null || trackId.length() != TRACK_ID_LENGTH) return false;
+        // Same arithmetic as writeTrackId, only checking for overflow
+        long l0 = 0, l1 = 0, l2 = 0, l3 = 0;
+        for (int i = 0; i < TRACK_ID_LENGTH; i++) {
+            int digit = BASE62.indexOf(trackId.charAt(i));
+            if (digit < 0) return false;
+            l0 = l0 * 62 + digit;
+            l1 = l1 * 62 + (l0 >>> 32);
+            l2 = l2 * 62 + (l1 >>> 32);
+            l3 = l3 * 62 + (l2 >>> 32);
+            l0 &= LIMB_MASK;
+            l1 &= LIMB_MASK;
+            l2 &= LIMB_MASK;
+            if ((l3 >>> 32) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write a base62 track ID as the 128-bit number it encodes. Only call
+     * with IDs {@link #isPackable} accepted.
+     */
+    public static void writeTrackId(ByteBuf buf, String trackId) {
+        // Four 32-bit limbs, least significant first
+        long l0 = 0, l1 = 0, l2 = 0, l3 = 0;
+        for (int i = 0; i < TRACK_ID_LENGTH; i++) {
+            l0 = l0 * 62 + BASE62.indexOf(trackId.charAt(i));
+            l1 = l1 * 62 + (l0 >>> 32);
+            l2 = l2 * 62 + (l1 >>> 32);
+            l3 = l3 * 62 + (l2 >>> 32);
+            l0 &= LIMB_MASK;
+            l1 &= LIMB_MASK;
+            l2 &= LIMB_MASK;
+        }
+        buf.writeInt((int) l3);
+        buf.writeInt((int) l2);
+        buf.writeInt((int) l1);
+        buf.writeInt((int) l0);
+    }
+
+    public static String readTrackId(ByteBuf buf) {
+        String trackId = getTrackId(buf, buf.readerIndex());
+        buf.skipBytes(PACKED_TRACK_ID_BYTES);
+        return trackId;
+    }
+
+    /**
+     * Decode a packed track ID at an absolute index, leaving the reader index alone.
+     */
+    public static String getTrackId(ByteBuf buf, int index) {
+        long l3 = buf.getUnsignedInt(index);
+        long l2 = buf.getUnsignedInt(index + 4);
+        long l1 = buf.getUnsignedInt(index + 8);
+        long l0 = buf.getUnsignedInt(index + 12);
+        char[] chars = new char[TRACK_ID_LENGTH];
+        for (int i = TRACK_ID_LENGTH - 1; i >= 0; i--) {
+            // Long division of the 128-bit value by 62
+            long cur = l3;
+            l3 = cur / 62;
+            cur = ((cur % 62) << 32) | l2;
+            l2 = cur / 62;
+            cur = ((cur % 62) << 32) | l1;
+            l1 = cur / 62;
+            cur = ((cur % 62) << 32) | l0;
+            l0 = cur / 62;
+            chars[i] = BASE62.charAt((int) (cur % 62));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,128 @@
+package com.spotifymod.party;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the offset between our wall clock and the party host's from
+ * NTP-style ping/pong exchanges. Each exchange gives four timestamps: ping
+ * sent (t0, ours), ping received (t1, host), pong sent (t2, host) and pong
+ * received (t3, ours). Then
+ * <pre>
+ *   offset = ((t1 - t0) + (t2 - t3)) / 2     rtt = (t3 - t0) - (t2 - t1)
+ * </pre>
+ * and host time = local time + offset, accurate to within rtt / 2.
+ *
+ * The last few samples are kept and the one with the lowest round trip wins,
+ * as in NTP's clock filter: a sample delayed on one leg is skewed by half
+ * the delay, and the fastest exchange is the least likely to have been.
+ * Client thread only.
+ */
+public class ClockSync {
+    private static final int WINDOW = 8;
+    // Exchanges slower than this say little about the offset; a ping
+    // unanswered for this long is given up
+    static final long MAX_RTT_MS = 5000;
+    // Pongs are accepted only for pings we sent within MAX_RTT_MS. Slots of
+    // expired pings are reused, so this only has to cover the pings that can
+    // be outstanding at once; the party manager waits for each one
+    private static final int MAX_PENDING = 8;
+
+    private final long[] offsets = new long[WINDOW];
+    private final long[] rtts = new long[WINDOW];
+    private int sampleCount = 0;
+    private int nextSample = 0;
+    // Send times of unanswered pings, 0 for a free slot
+    private final long[] pending = new long[MAX_PENDING];
+
+    private boolean hasEstimate = false;
+    private long offsetMs;
+    private long rttMs;
+
+    /** Note the t0 of a ping about to be sent. */
+    public void pingSent(long t0) {
+        int slot = 0;
+        for (int i = 0; i < MAX_PENDING; i++) {
+            if (pending[i] == 0 || t0 - pending[i] > MAX_RTT_MS) {
+                slot = i;
+                break;
+            }
+            if (pending[i] < pending[slot]) slot = i;
+        }
+        pending[slot] = t0;
+    }
+
+    /** Whether a ping sent within the last {@link #MAX_RTT_MS} is still unanswered. */
+    public boolean isAwaitingPong(long now) {
+        for (long t0 : pending) {
+            if (t0 != 0 && now - t0 <= MAX_RTT_MS) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add the sample from a pong.
+     * @return whether it was used; pongs for unknown pings and impossible
+     *         timings are ignored
+     */
+    public boolean addSample(long t0, long t1, long t2, long t3) {
+        if (!takePending(t0)) return false;
+        long rtt = (t3 - t0) - (t2 - t1);
+        if (rtt < 0 || rtt > MAX_RTT_MS || t2 < t1) return false;
+
+        offsets[nextSample] = ((t1 - t0) + (t2 - t3)) / 2;
+        rtts[nextSample] = rtt;
+        nextSample = (nextSample + 1) % WINDOW;
+        if (sampleCount < WINDOW) sampleCount++;
+
+        int best = 0;
+        for (int i = 1; i < sampleCount; i++) {
+            if (rtts[i] < rtts[best]) best = i;
+        }
+        offsetMs = offsets[best];
+        rttMs = rtts[best];
+        hasEstimate = true;
+        return true;
+    }
+
+    private boolean takePending(long t0) {
+        for (int i = 0; i < MAX_PENDING; i++) {
+            if (pending[i] == t0 && t0 != 0) {
+                pending[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasEstimate() {
+        return hasEstimate;
+    }
+
+    /** Host clock minus ours, in ms. */
+    public long getOffsetMs() {
+        return offsetMs;
+    }
+
+    /** Round trip of the sample the offset came from. */
+    public long getRttMs() {
+        return rttMs;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /** Our wall-clock time on the host's clock. */
+    public long toHostTime(long localTime) {
+        return localTime + offsetMs;
+    }
+
+    public void reset() {
+        sampleCount = 0;
+        nextSample = 0;
+        Arrays.fill(pending, 0);
+        hasEstimate = false;
+        offsetMs = 0;
+        rttMs = 0;
+    }
+}
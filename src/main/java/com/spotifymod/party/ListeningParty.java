@@ -14,8 +14,17 @@ public class ListeningParty {
     private long lastUpdateTime;
     private final List<PartyMember> members;
     private int maxMembers;
-
-    public ListeningParty(String hostProfileId, String partyName) {
+    // Bumped by the host on every membership change
+    private int rosterVersion;
+    // Sequence number of the newest host snapshot sent or applied
+    private int stateSeq;
+    private boolean hasState;
+    // Host wall-clock time the applied snapshot was taken at
+    private long stateHostTime;
+    // When the host last announced the party (remote parties only)
+    private long lastAnnounceTime;
+
+    public ListeningParty(String hostProfileId, String hostName, String partyName) {
         this.partyId = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
         this.hostProfileId = hostProfileId;
         this.partyName = partyName;
@@ -24,7 +33,21 @@ public class ListeningParty {
         this.lastUpdateTime = System.currentTimeMillis();
         
         // Host auto joins
-        addMember(new PartyMember(hostProfileId, partyName, true));
+        addMember(new PartyMember(hostProfileId, hostName, true));
+    }
+
+    /**
+     * A party hosted by someone else, as described by their announcements.
+     */
+    public ListeningParty(String partyId, String hostProfileId, String partyName, int maxMembers) {
+        this.partyId = partyId;
+        this.hostProfileId = hostProfileId;
+        this.partyName = partyName;
+        this.members = new ArrayList<>();
+        this.maxMembers = maxMembers;
+        this.rosterVersion = -1;
+        this.lastUpdateTime = System.currentTimeMillis();
+        this.lastAnnounceTime = lastUpdateTime;
     }
 
     public String getPartyId() {
@@ -74,6 +97,73 @@ public class ListeningParty {
         return lastUpdateTime;
     }
 
+    public int getRosterVersion() {
+        return rosterVersion;
+    }
+
+    /** Host side: record a membership change, returning the new roster version. */
+    public int bumpRosterVersion() {
+        return ++rosterVersion;
+    }
+
+    /**
+     * Member side: replace the member list with the host's, unless we
+     * already have this roster version or a newer one.
+     */
+    public boolean applyRoster(int version, List<PartyMember> roster, int maxMembers) {
+        if (rosterVersion >= 0 && version - rosterVersion <= 0) {
+            return false;
+        }
+        rosterVersion = version;
+        this.maxMembers = maxMembers;
+        members.clear();
+        members.addAll(roster);
+        return true;
+    }
+
+    public long getLastAnnounceTime() {
+        return lastAnnounceTime;
+    }
+
+    public void markAnnounced() {
+        this.lastAnnounceTime = System.currentTimeMillis();
+    }
+
+    /** Host side: the sequence number for the next snapshot. */
+    public int nextStateSeq() {
+        hasState = true;
+        return ++stateSeq;
+    }
+
+    public int getStateSeq() {
+        return stateSeq;
+    }
+
+    /**
+     * Member side: apply a host snapshot. Duplicates and snapshots older than
+     * the last one applied are ignored, so packets can arrive in any order.
+     * @param hostTime when the host took the snapshot, on its own clock
+     * @return whether the snapshot was applied
+     */
+    public boolean applyState(int seq, String trackUri, int positionMs, boolean playing, long hostTime) {
+        if (hasState && seq - stateSeq <= 0) {
+            return false;
+        }
+        hasState = true;
+        stateSeq = seq;
+        this.currentTrackUri = trackUri;
+        this.currentPositionMs = positionMs;
+        this.isPlaying = playing;
+        this.stateHostTime = hostTime;
+        this.lastUpdateTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /** Host clock time of the applied snapshot's position (member side). */
+    public long getStateHostTime() {
+        return stateHostTime;
+    }
+
     public List<PartyMember> getMembers() {
         return new ArrayList<>(members);
     }
@@ -1,84 +1,152 @@
 package com.spotifymod.party;
 
 import com.spotifymod.SpotifyMod;
-import com.spotifymod.api.SpotifyAPI;
-import com.spotifymod.user.UserProfile;
+import com.spotifymod.debug.LogBuffer;
+import com.spotifymod.network.ModNetworkHandler;
+import com.spotifymod.network.PartyProtocol;
+import com.spotifymod.playback.PlaybackSnapshot;
+import com.spotifymod.playback.PlaybackStateService;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.EntityPlayer;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Listening parties shared with other mod users on the server. The host is
+ * authoritative: it announces the roster and streams numbered playback
+ * snapshots, and members follow them. Members are identified by player UUID.
+ * Everything here runs on the client thread except {@link #isHosting} and
+ * {@link #isFollowing}, which the packet thread uses to drop traffic early.
+ */
 public class PartyManager {
+    // Parties we know of: our own, and those announced by other hosts
     private static final Map<String, ListeningParty> parties = new ConcurrentHashMap<>();
-    private ListeningParty currentParty;
-    private boolean isHost;
+    private volatile ListeningParty currentParty;
+    private volatile boolean isHost;
+    // Packet key of currentParty
+    private volatile int currentKey;
+    // Host of currentParty, and us, for checking packets on the packet thread
+    private volatile UUID currentHost;
+    private volatile UUID self;
     private long lastSyncTime = 0;
     private static final long SYNC_INTERVAL = 1000; // 1 second
+    // Past this we seek to the host's position; the seek itself takes a few hundred ms
+    private static final int DRIFT_SEEK_THRESHOLD = 1500;
+    // Set while a play/pause or seek we sent to follow the host is in flight
+    private volatile boolean syncCommandInFlight = false;
+
+    // Host: snapshot cadence, and a roster change waiting to be announced
+    private static final long STATE_INTERVAL = 500;
+    private static final long ANNOUNCE_INTERVAL = 5000;
+    private long lastStateSent = 0;
+    private boolean rosterChanged = false;
+
+    // Member: until the host lists us, the join request is repeated, then given up
+    private static final long JOIN_RETRY_INTERVAL = 1000;
+    private static final long JOIN_TIMEOUT = 5000;
+    private boolean joinConfirmed = false;
+    private long joinRequestedAt = 0;
+    private long lastJoinRequest = 0;
+
+    // Member: the host's clock, measured by pings; a few quick ones, then occasional.
+    // One ping at a time, and no faster than 1/s: they share our per-sender
+    // budget on the host (2/s) with join requests and track updates
+    private final ClockSync clockSync = new ClockSync();
+    private static final int PING_BURST = 4;
+    private static final long PING_BURST_INTERVAL = 1000;
+    private static final long PING_INTERVAL = 5000;
+    private long lastPing = 0;
+    private int pingsSent = 0;
+
+    // Parties not announced for this long are gone
+    private static final long PARTY_TTL = 15000;
+    private static final int MAX_KNOWN_PARTIES = 64;
 
     public ListeningParty createParty(String partyName) {
-        UserProfile profile = SpotifyMod.instance.getProfileManager().getActiveProfile();
-        if (profile == null) {
+        EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+        if (player == null || network() == null || !network().isBroadcasting()) {
             return null;
         }
 
-        ListeningParty party = new ListeningParty(profile.getProfileId(), partyName);
+        leaveCurrentParty();
+        ListeningParty party = new ListeningParty(player.getUniqueID().toString(), player.getName(), partyName);
         parties.put(party.getPartyId(), party);
-        currentParty = party;
-        isHost = true;
-        
+        setCurrentParty(party, true);
+        rosterChanged = true;
+        lastStateSent = 0;
+
         return party;
     }
 
+    /**
+     * Ask the host of an announced party to let us in. Returns false if the
+     * party is unknown or full; the host's next announcement confirms us.
+     */
     public boolean joinParty(String partyId) {
         ListeningParty party = parties.get(partyId);
         if (party == null) {
             return false;
         }
 
-        UserProfile profile = SpotifyMod.instance.getProfileManager().getActiveProfile();
-        if (profile == null) {
+        EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+        if (player == null) {
             return false;
         }
 
+        if (party == currentParty) {
+            return true;
+        }
         if (party.isFull()) {
             return false;
         }
 
-        ListeningParty.PartyMember member = new ListeningParty.PartyMember(
-            profile.getProfileId(),
-            profile.getProfileName(),
-            false
-        );
-
-        if (party.addMember(member)) {
-            leaveCurrentParty(); // Leave any existing party
-            currentParty = party;
-            isHost = false;
-            syncWithHost();
-            return true;
-        }
-
-        return false;
+        leaveCurrentParty(); // Leave any existing party
+        setCurrentParty(party, false);
+        joinConfirmed = party.isMember(player.getUniqueID().toString());
+        joinRequestedAt = System.currentTimeMillis();
+        lastJoinRequest = joinRequestedAt;
+        protocol().join(partyId, player.getUniqueID(), player.getName());
+        return true;
     }
 
     public void leaveCurrentParty() {
-        if (currentParty == null) {
+        ListeningParty party = currentParty;
+        if (party == null) {
             return;
         }
 
-        UserProfile profile = SpotifyMod.instance.getProfileManager().getActiveProfile();
-        if (profile != null) {
-            currentParty.removeMember(profile.getProfileId());
+        EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+        if (player != null && network() != null && network().isBroadcasting()) {
+            // From the host this disbands the party for everyone
+            protocol().leave(party.getPartyId(), player.getUniqueID());
+            party.removeMember(player.getUniqueID().toString());
         }
 
         if (isHost) {
             // If host leaves, disband the party
-            parties.remove(currentParty.getPartyId());
+            parties.remove(party.getPartyId());
         }
 
-        currentParty = null;
-        isHost = false;
+        setCurrentParty(null, false);
+    }
+
+    private void setCurrentParty(ListeningParty party, boolean host) {
+        // Key and host before party: the packet thread reads them in the other order
+        currentKey = party != null ? PartyProtocol.partyKey(party.getPartyId()) : 0;
+        currentHost = party != null ? UUID.fromString(party.getHostProfileId()) : null;
+        EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+        self = player != null ? player.getUniqueID() : null;
+        isHost = host;
+        currentParty = party;
+        joinConfirmed = host;
+        clockSync.reset();
+        lastPing = 0;
+        pingsSent = 0;
     }
 
     public void updatePartyState(String trackUri, int positionMs, boolean playing) {
@@ -107,36 +175,33 @@ public class PartyManager {
         int positionMs = currentParty.getCurrentPositionMs();
         boolean isPlaying = currentParty.isPlaying();
 
-        // Calculate adjusted position based on time elapsed
-        long timeSinceUpdate = currentTime - currentParty.getLastUpdateTime();
+        // Calculate adjusted position based on time elapsed, on the host's
+        // clock once we know it; until then, from when the snapshot arrived
+        long timeSinceUpdate = clockSync.hasEstimate()
+                ? clockSync.toHostTime(currentTime) - currentParty.getStateHostTime()
+                : currentTime - currentParty.getLastUpdateTime();
         if (isPlaying && timeSinceUpdate > 0) {
             positionMs += (int) timeSinceUpdate;
         }
 
-        // Apply to local player
-        SpotifyAPI api = SpotifyMod.instance.getSpotifyAPI();
-        if (trackUri != null) {
-            // Note: This is simplified - you'd need to implement track URI playback
-            final int finalPositionMs = positionMs;
-            final boolean finalIsPlaying = isPlaying;
-            api.getCurrentTrack().thenAccept(currentTrack -> {
-                if (currentTrack != null) {
-                    // Check if we need to sync
-                    int drift = Math.abs(currentTrack.progressMs - finalPositionMs);
-                    if (drift > 3000) { // More than 3 seconds drift
-                        // Would need seek functionality in Spotify API
-                        System.out.println("Drift detected: " + drift + "ms");
-                    }
-
-                    if (currentTrack.isPlaying != finalIsPlaying) {
-                        if (finalIsPlaying) {
-                            api.play();
-                        } else {
-                            api.pause();
-                        }
-                    }
-                }
-            });
+        // Apply to local player, comparing against the shared playback snapshot
+        PlaybackStateService playback = SpotifyMod.instance.getPlaybackService();
+        PlaybackSnapshot snapshot = playback.getSnapshot();
+        if (trackUri != null && snapshot.hasTrack()) {
+            // The service shows the new state at once and polls to confirm it,
+            // so these only fire again if Spotify didn't take the command
+            if (snapshot.track.isPlaying != isPlaying && !syncCommandInFlight) {
+                syncCommandInFlight = true;
+                playback.setPlaying(isPlaying).whenComplete((success, error) -> syncCommandInFlight = false);
+            }
+
+            // Note: This is simplified - following the host onto another track isn't implemented
+            int drift = Math.abs(snapshot.estimatePositionMs(currentTime) - positionMs);
+            if (drift > DRIFT_SEEK_THRESHOLD && trackUri.equals(snapshot.track.uri) && !syncCommandInFlight) {
+                LogBuffer.get().info("Party drift " + drift + "ms, seeking to " + positionMs + "ms");
+                syncCommandInFlight = true;
+                playback.seekTo(positionMs).whenComplete((success, error) -> syncCommandInFlight = false);
+            }
         }
     }
 
@@ -152,6 +217,31 @@ public class PartyManager {
         return isHost;
     }
 
+    /** Our estimate of the current party host's clock (members only). */
+    public ClockSync getClockSync() {
+        return clockSync;
+    }
+
+    /** Whether we host the party with this packet key. Safe from any thread. */
+    public boolean isHosting(int partyKey) {
+        return currentParty != null && isHost && currentKey == partyKey;
+    }
+
+    /** Whether we are a member of the party with this packet key. Safe from any thread. */
+    public boolean isFollowing(int partyKey) {
+        return currentParty != null && !isHost && currentKey == partyKey;
+    }
+
+    /** Whether this is the host of the party we follow. Safe from any thread. */
+    public boolean isFollowedHost(UUID host) {
+        return host.equals(currentHost);
+    }
+
+    /** Whether this is our own player. Safe from any thread. */
+    public boolean isSelf(UUID player) {
+        return player.equals(self);
+    }
+
     public static List<ListeningParty> getAllParties() {
         return new ArrayList<>(parties.values());
     }
@@ -160,27 +250,210 @@ public class PartyManager {
         return parties.get(partyId);
     }
 
-    // Call this regularly to sync with party
+    // ---- Packets, delivered on the client thread ----
+
+    public void onPartyAnnounced(String partyId, String hostId, int rosterVersion, int maxMembers,
+                                 String name, List<ListeningParty.PartyMember> members) {
+        ListeningParty party = parties.get(partyId);
+        if (party == null) {
+            if (parties.size() >= MAX_KNOWN_PARTIES) {
+                return;
+            }
+            party = new ListeningParty(partyId, hostId, name, maxMembers);
+            parties.put(partyId, party);
+            LogBuffer.get().info("Discovered party id=" + partyId + " name=" + name);
+        } else if (!party.isHost(hostId) || (party == currentParty && isHost)) {
+            // Someone else using our ID, or a colliding one
+            return;
+        }
+        party.markAnnounced();
+        party.setPartyName(name);
+        if (!party.applyRoster(rosterVersion, members, maxMembers) || party != currentParty) {
+            return;
+        }
+
+        String self = selfId();
+        if (self == null) return;
+        if (party.isMember(self)) {
+            if (!joinConfirmed) {
+                LogBuffer.get().info("Joined party id=" + partyId);
+            }
+            joinConfirmed = true;
+        } else if (joinConfirmed) {
+            LogBuffer.get().info("Removed from party id=" + partyId + " by the host");
+            setCurrentParty(null, false);
+        }
+    }
+
+    public void onJoinRequested(String partyId, String memberId, String displayName) {
+        ListeningParty party = currentParty;
+        if (party == null || !isHost || !party.getPartyId().equals(partyId)) {
+            return;
+        }
+        if (party.isMember(memberId)) {
+            // Our announcement went missing; repeat it
+            rosterChanged = true;
+            return;
+        }
+        if (!party.addMember(new ListeningParty.PartyMember(memberId, displayName, false))) {
+            LogBuffer.get().info("Party full, ignoring join from " + displayName);
+            return;
+        }
+        party.bumpRosterVersion();
+        rosterChanged = true;
+        // The newcomer gets a snapshot along with the roster
+        lastStateSent = 0;
+        LogBuffer.get().info(displayName + " joined party id=" + partyId);
+    }
+
+    public void onLeft(String partyId, String memberId) {
+        ListeningParty party = parties.get(partyId);
+        if (party == null) {
+            return;
+        }
+        if (party.isHost(memberId)) {
+            // Only followers get here; other parties expire when their announcements stop
+            if (party != currentParty || isHost) {
+                return;
+            }
+            parties.remove(partyId);
+            LogBuffer.get().info("Party id=" + partyId + " was disbanded by the host");
+            setCurrentParty(null, false);
+        } else if (party == currentParty && isHost && party.isMember(memberId)) {
+            party.removeMember(memberId);
+            party.bumpRosterVersion();
+            rosterChanged = true;
+        }
+    }
+
+    public void onHostState(String partyId, int seq, String trackUri, int positionMs, boolean playing, long sentAt) {
+        ListeningParty party = currentParty;
+        if (party == null || isHost || !party.getPartyId().equals(partyId)) {
+            return;
+        }
+        party.applyState(seq, trackUri, positionMs, playing, sentAt);
+    }
+
+    public void onPing(String partyId, UUID member, long sentAt, long receivedAt) {
+        ListeningParty party = currentParty;
+        if (party == null || !isHost || !party.getPartyId().equals(partyId)
+                || !party.isMember(member.toString())) {
+            return;
+        }
+        protocol().pong(partyId, currentHost, member, sentAt, receivedAt);
+    }
+
+    public void onPong(String partyId, long pingSentAt, long pingReceivedAt,
+                       long pongSentAt, long receivedAt) {
+        ListeningParty party = currentParty;
+        if (party == null || isHost || !party.getPartyId().equals(partyId)) {
+            return;
+        }
+        if (clockSync.addSample(pingSentAt, pingReceivedAt, pongSentAt, receivedAt)) {
+            LogBuffer.get().trace("Party clock offset " + clockSync.getOffsetMs() + "ms, rtt " + clockSync.getRttMs() + "ms");
+        }
+    }
+
+    // Called every client tick
     public void tick() {
-        if (currentParty != null && !isHost) {
-            syncWithHost();
-        } else if (currentParty != null && isHost) {
-            // Update party state from current playback
-            SpotifyAPI api = SpotifyMod.instance.getSpotifyAPI();
-            api.getCurrentTrack().thenAccept(track -> {
-                if (track != null) {
-                    updatePartyState(null, track.progressMs, track.isPlaying);
+        long now = System.currentTimeMillis();
+        if (network() == null || !network().isBroadcasting()) {
+            // Left the server: nobody is listening to anything we send
+            if (currentParty != null || !parties.isEmpty()) {
+                setCurrentParty(null, false);
+                parties.clear();
+            }
+            return;
+        }
+
+        ListeningParty party = currentParty;
+        if (party != null && isHost) {
+            tickHost(party, now);
+        } else if (party != null) {
+            tickMember(party, now);
+        }
+
+        // Forget parties whose host went quiet
+        Iterator<ListeningParty> it = parties.values().iterator();
+        while (it.hasNext()) {
+            ListeningParty known = it.next();
+            if (known == currentParty && isHost) continue;
+            if (now - known.getLastAnnounceTime() > PARTY_TTL) {
+                it.remove();
+                if (known == currentParty) {
+                    LogBuffer.get().info("Lost contact with party id=" + known.getPartyId());
+                    setCurrentParty(null, false);
                 }
-            });
+            }
+        }
+    }
+
+    private void tickHost(ListeningParty party, long now) {
+        if (now - lastStateSent >= STATE_INTERVAL) {
+            // Update party state from the shared playback snapshot
+            PlaybackSnapshot snapshot = SpotifyMod.instance.getPlaybackService().getSnapshot();
+            if (snapshot.hasTrack()) {
+                updatePartyState(snapshot.track.uri,
+                        snapshot.estimatePositionMs(now),
+                        snapshot.track.isPlaying);
+            }
+            protocol().state(party.getPartyId(), currentHost, party.nextStateSeq(), party.getCurrentTrackUri(),
+                    party.getCurrentPositionMs(), party.isPlaying(), now);
+            lastStateSent = now;
+        }
+        if (rosterChanged || now - party.getLastAnnounceTime() >= ANNOUNCE_INTERVAL) {
+            protocol().announce(party);
+            party.markAnnounced();
+            rosterChanged = false;
+        }
+    }
+
+    private void tickMember(ListeningParty party, long now) {
+        if (!joinConfirmed) {
+            if (now - joinRequestedAt >= JOIN_TIMEOUT) {
+                LogBuffer.get().warn("No answer from the host of party id=" + party.getPartyId());
+                setCurrentParty(null, false);
+                return;
+            }
+            EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+            if (now - lastJoinRequest >= JOIN_RETRY_INTERVAL && player != null) {
+                protocol().join(party.getPartyId(), player.getUniqueID(), player.getName());
+                lastJoinRequest = now;
+            }
+            return;
+        }
+
+        // The burst counts pings sent, so a host that never answers doesn't keep it going
+        long pingInterval = pingsSent < PING_BURST ? PING_BURST_INTERVAL : PING_INTERVAL;
+        EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+        if (now - lastPing >= pingInterval && !clockSync.isAwaitingPong(now) && player != null) {
+            clockSync.pingSent(now);
+            protocol().ping(party.getPartyId(), player.getUniqueID(), now);
+            lastPing = now;
+            pingsSent++;
         }
+        syncWithHost();
     }
-    
+
+    private static String selfId() {
+        EntityPlayer player = Minecraft.getMinecraft().thePlayer;
+        return player != null ? player.getUniqueID().toString() : null;
+    }
+
+    private static ModNetworkHandler network() {
+        return SpotifyMod.instance.getNetworkHandler();
+    }
+
+    private static PartyProtocol protocol() {
+        return network().getPartyProtocol();
+    }
+
     public void cleanup() {
         // Leave current party
         if (currentParty != null) {
             leaveCurrentParty();
         }
-        
+
         // Clear all party data
         parties.clear();
     }
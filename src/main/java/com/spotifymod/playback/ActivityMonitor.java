@@ -0,0 +1,45 @@
+package com.spotifymod.playback;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Works out how much anything currently needs playback data.
+ * Features register a check for whether they need it right now: things the
+ * player is looking at (HUD, control screen) count as foreground demand,
+ * things that run unseen (party sync, track broadcast) as background demand.
+ * With neither, {@link PlaybackStateService} stops polling altogether.
+ */
+public class ActivityMonitor {
+
+    public enum Demand {
+        NONE,
+        BACKGROUND,
+        FOREGROUND
+    }
+
+    private final List<BooleanSupplier> foreground = new CopyOnWriteArrayList<>();
+    private final List<BooleanSupplier> background = new CopyOnWriteArrayList<>();
+
+    /** Something on screen shows playback while the check returns true. */
+    public void addForegroundDemand(BooleanSupplier active) {
+        foreground.add(active);
+    }
+
+    /** Something unseen needs playback data while the check returns true. */
+    public void addBackgroundDemand(BooleanSupplier active) {
+        background.add(active);
+    }
+
+    // Called on the client thread
+    public Demand getDemand() {
+        for (BooleanSupplier active : foreground) {
+            if (active.getAsBoolean()) return Demand.FOREGROUND;
+        }
+        for (BooleanSupplier active : background) {
+            if (active.getAsBoolean()) return Demand.BACKGROUND;
+        }
+        return Demand.NONE;
+    }
+}
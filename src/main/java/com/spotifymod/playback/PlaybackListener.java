@@ -0,0 +1,20 @@
+package com.spotifymod.playback;
+
+/**
+ * Receives playback changes from {@link PlaybackStateService}.
+ * All callbacks run on the client thread.
+ */
+public interface PlaybackListener {
+
+    /** Called for every published snapshot, after the more specific callbacks. */
+    default void onSnapshot(PlaybackSnapshot snapshot) {}
+
+    /** The track changed, or playback started or stopped entirely. */
+    default void onTrackChanged(PlaybackSnapshot previous, PlaybackSnapshot current) {}
+
+    /** Same track, but it went from playing to paused or back. */
+    default void onPlayStateChanged(PlaybackSnapshot current) {}
+
+    /** Same track, but the position is far from where it should have been (seek, scrub, restart). */
+    default void onProgressJump(PlaybackSnapshot current, int expectedPositionMs) {}
+}
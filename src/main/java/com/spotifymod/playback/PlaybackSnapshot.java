@@ -0,0 +1,38 @@
+package com.spotifymod.playback;
+
+import com.spotifymod.api.SpotifyAPI;
+
+/**
+ * Immutable view of the player state as of one /me/player/currently-playing response.
+ */
+public class PlaybackSnapshot {
+    public static final PlaybackSnapshot EMPTY = new PlaybackSnapshot(null, 0L);
+
+    /** Currently playing track, or null when nothing is playing. */
+    public final SpotifyAPI.TrackInfo track;
+    /** System time the response was received. */
+    public final long fetchedAt;
+
+    public PlaybackSnapshot(SpotifyAPI.TrackInfo track, long fetchedAt) {
+        this.track = track;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public boolean hasTrack() {
+        return track != null;
+    }
+
+    public boolean isPlaying() {
+        return track != null && track.isPlaying;
+    }
+
+    /**
+     * Extrapolate the playback position at the given time from the fetched progress.
+     */
+    public int estimatePositionMs(long now) {
+        if (track == null) return 0;
+        if (!track.isPlaying || fetchedAt <= 0) return track.progressMs;
+        long elapsed = Math.max(0, now - fetchedAt);
+        return (int) Math.min(track.progressMs + elapsed, track.durationMs);
+    }
+}
@@ -0,0 +1,295 @@
+package com.spotifymod.playback;
+
+import com.spotifymod.api.SpotifyAPI;
+import com.spotifymod.debug.LogBuffer;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the single /me/player/currently-playing poll loop.
+ * The HUD, control screen, party sync, network broadcast and keybinds all read
+ * the latest snapshot from here instead of each polling Spotify on their own.
+ *
+ * Playback controls also go through here so their effect can be shown
+ * optimistically: the snapshot changes as soon as the key is pressed, and the
+ * confirming poll (or a failed request) corrects it afterwards.
+ */
+public class PlaybackStateService {
+    private static final int PROGRESS_JUMP_THRESHOLD_MS = 2500;
+    // Spotify takes a moment to reflect a command in currently-playing
+    private static final long CONFIRM_DELAY = 400;
+    // Returned for failed or shed polls, which must not look like playback stopping
+    private static final SpotifyAPI.TrackInfo UNAVAILABLE = new SpotifyAPI.TrackInfo(null, null, "", "", "", 0, 0, false);
+
+    private final SpotifyAPI api;
+    private final List<PlaybackListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong pollCount = new AtomicLong();
+    private final PollScheduler pollScheduler = new PollScheduler();
+    private final ActivityMonitor activity = new ActivityMonitor();
+    private ActivityMonitor.Demand demand = ActivityMonitor.Demand.NONE;
+
+    private volatile PlaybackSnapshot snapshot = PlaybackSnapshot.EMPTY;
+    // Result handed over from the HTTP thread, published on the next client tick
+    private volatile PlaybackSnapshot pending;
+    private volatile boolean isPolling = false;
+    // Set by the HTTP thread when a poll ends, however it ended; the next one is scheduled on the client tick
+    private volatile boolean pollFinished = false;
+    // Polls started before this reflect the state before the user's last action
+    private volatile long lastLocalChangeAt = 0;
+    // Work handed over from HTTP threads, run on the next client tick
+    private final Queue<Runnable> clientTasks = new ConcurrentLinkedQueue<>();
+
+    public PlaybackStateService(SpotifyAPI api) {
+        this.api = api;
+    }
+
+    public void addListener(PlaybackListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(PlaybackListener listener) {
+        listeners.remove(listener);
+    }
+
+    public PlaybackSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Register what needs playback data here; with no demand nothing is polled.
+     */
+    public ActivityMonitor getActivity() {
+        return activity;
+    }
+
+    /**
+     * Demand as of the last tick, for the debug screen.
+     */
+    public ActivityMonitor.Demand getDemand() {
+        return demand;
+    }
+
+    /**
+     * Poll on the next tick instead of waiting for the schedule,
+     * e.g. when a screen that shows playback opens.
+     */
+    public void requestRefresh() {
+        pollScheduler.requestPollBy(0);
+    }
+
+    /**
+     * Poll after the given delay, unless a poll is already due sooner.
+     * Client thread only.
+     */
+    public void requestRefreshIn(long delayMs) {
+        pollScheduler.requestPollBy(System.currentTimeMillis() + delayMs);
+    }
+
+    /**
+     * Pause or resume. The snapshot flips immediately; it is rolled back if
+     * Spotify rejects the request. Call on the client thread.
+     */
+    public CompletableFuture<Boolean> togglePlayPause() {
+        return setPlaying(!snapshot.isPlaying());
+    }
+
+    /**
+     * Resume or pause, shown optimistically like {@link #togglePlayPause()}.
+     * Call on the client thread.
+     */
+    public CompletableFuture<Boolean> setPlaying(boolean play) {
+        PlaybackSnapshot before = snapshot;
+        long now = System.currentTimeMillis();
+        lastLocalChangeAt = now;
+        pollScheduler.onUserAction(now);
+
+        PlaybackSnapshot optimistic = null;
+        if (before.hasTrack()) {
+            optimistic = new PlaybackSnapshot(before.track.withPlayState(play, before.estimatePositionMs(now)), now);
+            publish(optimistic);
+        }
+
+        PlaybackSnapshot shown = optimistic;
+        return (play ? api.play() : api.pause()).thenApply(success -> {
+            clientTasks.add(() -> {
+                // Only undo it if nothing newer has been published since
+                if (!success && shown != null && snapshot == shown) {
+                    publish(before);
+                }
+                requestRefreshIn(CONFIRM_DELAY);
+            });
+            return success;
+        });
+    }
+
+    /**
+     * Jump to a position in the current track. The snapshot moves there
+     * immediately and is rolled back if Spotify rejects the request.
+     * Call on the client thread.
+     */
+    public CompletableFuture<Boolean> seekTo(int positionMs) {
+        PlaybackSnapshot before = snapshot;
+        long now = System.currentTimeMillis();
+        lastLocalChangeAt = now;
+        pollScheduler.onUserAction(now);
+
+        PlaybackSnapshot optimistic = null;
+        if (before.hasTrack()) {
+            int clamped = Math.max(0, Math.min(positionMs, before.track.durationMs));
+            optimistic = new PlaybackSnapshot(before.track.withPlayState(before.track.isPlaying, clamped), now);
+            publish(optimistic);
+        }
+
+        PlaybackSnapshot shown = optimistic;
+        return api.getSeekCommand().submit(positionMs).thenApply(success -> {
+            clientTasks.add(() -> {
+                if (!success && shown != null && snapshot == shown) {
+                    publish(before);
+                }
+                requestRefreshIn(CONFIRM_DELAY);
+            });
+            return success;
+        });
+    }
+
+    // Volume, shuffle and repeat aren't in currently-playing, so a poll can't
+    // confirm them; they go straight to their coalescing commands
+
+    public CompletableFuture<Boolean> setVolume(int percent) {
+        return api.getVolumeCommand().submit(percent);
+    }
+
+    public CompletableFuture<Boolean> setShuffle(boolean shuffle) {
+        return api.getShuffleCommand().submit(shuffle);
+    }
+
+    public CompletableFuture<Boolean> setRepeat(String repeatMode) {
+        return api.getRepeatCommand().submit(repeatMode);
+    }
+
+    public CompletableFuture<Boolean> skipNext() {
+        return skip(api.next());
+    }
+
+    public CompletableFuture<Boolean> skipPrevious() {
+        return skip(api.previous());
+    }
+
+    // We can't know the new track locally, so just read it back as soon as Spotify has it
+    private CompletableFuture<Boolean> skip(CompletableFuture<Boolean> request) {
+        lastLocalChangeAt = System.currentTimeMillis();
+        pollScheduler.onUserAction(lastLocalChangeAt);
+        return request.thenApply(success -> {
+            if (success) {
+                // The poll schedule belongs to the client thread
+                clientTasks.add(() -> requestRefreshIn(CONFIRM_DELAY));
+            }
+            return success;
+        });
+    }
+
+    /**
+     * Total currently-playing requests made, for the debug screen.
+     */
+    public long getPollCount() {
+        return pollCount.get();
+    }
+
+    // Called every client tick
+    public void tick() {
+        Runnable task;
+        while ((task = clientTasks.poll()) != null) {
+            task.run();
+        }
+
+        PlaybackSnapshot result = pending;
+        if (result != null) {
+            pending = null;
+            publish(result);
+        }
+
+        long now = System.currentTimeMillis();
+        ActivityMonitor.Demand previousDemand = demand;
+        demand = api.isAuthenticated() ? activity.getDemand() : ActivityMonitor.Demand.NONE;
+        if (demand.compareTo(previousDemand) > 0 && now - snapshot.fetchedAt > PollScheduler.HEARTBEAT_INTERVAL) {
+            // Something started showing playback after a long idle (HUD back in focus, screen opened): catch up now
+            requestRefresh();
+        }
+
+        if (pollFinished) {
+            pollFinished = false;
+            // Refreshes requested while the poll was in flight are still pending in the scheduler
+            pollScheduler.onPollFinished(snapshot, now, demand);
+        }
+
+        if (demand == ActivityMonitor.Demand.NONE) {
+            return;
+        }
+
+        if (isPolling || !pollScheduler.isPollDue(now)) {
+            return;
+        }
+
+        isPolling = true;
+        pollScheduler.onPollStarted(now);
+        pollCount.incrementAndGet();
+        long startedAt = now;
+        api.getCurrentTrack(UNAVAILABLE).thenAccept(track -> {
+            // Drop responses that predate a local change, they would undo it on screen
+            if (track != UNAVAILABLE && startedAt >= lastLocalChangeAt) {
+                pending = new PlaybackSnapshot(track, System.currentTimeMillis());
+            }
+            pollFinished = true;
+            isPolling = false;
+        }).exceptionally(e -> {
+            pollFinished = true;
+            isPolling = false;
+            return null;
+        });
+    }
+
+    private void publish(PlaybackSnapshot current) {
+        PlaybackSnapshot previous = snapshot;
+        snapshot = current;
+
+        boolean trackChanged = current.hasTrack() != previous.hasTrack()
+                || (current.hasTrack() && !current.track.isSameTrack(previous.track));
+        boolean playStateChanged = !trackChanged && current.hasTrack()
+                && current.track.isPlaying != previous.track.isPlaying;
+        int expected = previous.estimatePositionMs(current.fetchedAt);
+        boolean progressJumped = !trackChanged && !playStateChanged && current.hasTrack()
+                && Math.abs(current.track.progressMs - expected) > PROGRESS_JUMP_THRESHOLD_MS;
+
+        // Anything the extrapolation didn't see coming means someone is driving playback elsewhere
+        if ((trackChanged && !pollScheduler.isExpectedTrackEnd(previous, current))
+                || playStateChanged || progressJumped) {
+            pollScheduler.onDiscontinuity(current.fetchedAt);
+        }
+
+        for (PlaybackListener listener : listeners) {
+            try {
+                if (trackChanged) {
+                    listener.onTrackChanged(previous, current);
+                } else if (playStateChanged) {
+                    listener.onPlayStateChanged(current);
+                } else if (progressJumped) {
+                    listener.onProgressJump(current, expected);
+                }
+                listener.onSnapshot(current);
+            } catch (Exception e) {
+                LogBuffer.get().error("Playback listener error: " + e.getMessage());
+            }
+        }
+
+        if (trackChanged && current.hasTrack()) {
+            LogBuffer.get().trace("Playback track changed: " + current.track.artist + " - " + current.track.name);
+        }
+    }
+}
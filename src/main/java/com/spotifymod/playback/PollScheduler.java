@@ -0,0 +1,106 @@
+package com.spotifymod.playback;
+
+/**
+ * Decides when {@link PlaybackStateService} polls next.
+ * Between polls the position is extrapolated from the last snapshot, so the
+ * only things a poll really has to catch are the track ending and changes made
+ * outside the mod (another device, the desktop app). The track end is
+ * predictable, so we poll right after it; everything else is caught by a slow
+ * heartbeat, sped up for a while after a user action or anything unexpected.
+ * The heartbeat slows down further when nothing is playing or when only
+ * background features need the data.
+ *
+ * Explicit refresh requests (a screen opening, a command to confirm) are kept
+ * apart from the schedule: they can only bring the next poll forward, and a
+ * poll answers the ones already due. That bookkeeping is client thread only.
+ */
+public class PollScheduler {
+    static final long FAST_INTERVAL = 1000;
+    static final long FAST_WINDOW = 6000;
+    static final long HEARTBEAT_INTERVAL = 15000;
+    static final long BACKGROUND_HEARTBEAT_INTERVAL = 30000;
+    // Paused or no active device (204)
+    static final long IDLE_INTERVAL = 30000;
+    static final long BACKGROUND_IDLE_INTERVAL = 60000;
+    // Poll this long after the predicted end, so Spotify has already moved on
+    static final long END_GRACE = 250;
+    // Still reporting the old track past its end: ask again soon
+    static final long BOUNDARY_RETRY = 300;
+    // A track change this close to the predicted end was expected
+    static final long BOUNDARY_SLACK = 3000;
+
+    private volatile long fastUntil = 0;
+    // From the last poll's outcome; none while a poll is in flight
+    private long scheduledAt = 0;
+    // Earliest outstanding refresh request
+    private long requestedAt = Long.MAX_VALUE;
+
+    /** The user changed playback through the mod. */
+    public void onUserAction(long now) {
+        fastUntil = now + FAST_WINDOW;
+    }
+
+    /** A poll showed a change we didn't predict. */
+    public void onDiscontinuity(long now) {
+        fastUntil = now + FAST_WINDOW;
+    }
+
+    public boolean isFast(long now) {
+        return now < fastUntil;
+    }
+
+    /**
+     * Whether a track change seen in {@code current} happened where {@code previous} said it would.
+     */
+    public boolean isExpectedTrackEnd(PlaybackSnapshot previous, PlaybackSnapshot current) {
+        if (!previous.isPlaying()) return false;
+        return Math.abs(predictedEndAt(previous) - current.fetchedAt) <= BOUNDARY_SLACK;
+    }
+
+    /** Poll no later than {@code at}. */
+    public void requestPollBy(long at) {
+        requestedAt = Math.min(requestedAt, at);
+    }
+
+    public boolean isPollDue(long now) {
+        return now >= Math.min(scheduledAt, requestedAt);
+    }
+
+    /** A poll is starting; it answers every request that is already due. */
+    public void onPollStarted(long now) {
+        scheduledAt = Long.MAX_VALUE;
+        if (requestedAt <= now) {
+            requestedAt = Long.MAX_VALUE;
+        }
+    }
+
+    /** A poll ended, however it ended; schedule the next one from what it left us with. */
+    public void onPollFinished(PlaybackSnapshot snapshot, long now, ActivityMonitor.Demand demand) {
+        scheduledAt = nextPollAt(snapshot, now, demand);
+    }
+
+    public long nextPollAt(PlaybackSnapshot snapshot, long now, ActivityMonitor.Demand demand) {
+        boolean foreground = demand == ActivityMonitor.Demand.FOREGROUND;
+        long heartbeat;
+        if (snapshot.isPlaying()) {
+            heartbeat = foreground ? HEARTBEAT_INTERVAL : BACKGROUND_HEARTBEAT_INTERVAL;
+        } else {
+            heartbeat = foreground ? IDLE_INTERVAL : BACKGROUND_IDLE_INTERVAL;
+        }
+        long next = now + (isFast(now) ? FAST_INTERVAL : heartbeat);
+        if (snapshot.isPlaying()) {
+            long endAt = predictedEndAt(snapshot);
+            if (endAt <= now) {
+                // Give up on the quick retries if it is stuck well past the end
+                next = Math.min(next, now + (now - endAt < BOUNDARY_SLACK ? BOUNDARY_RETRY : FAST_INTERVAL));
+            } else {
+                next = Math.min(next, endAt + END_GRACE);
+            }
+        }
+        return next;
+    }
+
+    private static long predictedEndAt(PlaybackSnapshot snapshot) {
+        return snapshot.fetchedAt + Math.max(0, snapshot.track.durationMs - snapshot.track.progressMs);
+    }
+}
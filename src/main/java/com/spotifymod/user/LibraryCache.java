@@ -0,0 +1,220 @@
+package com.spotifymod.user;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.spotifymod.api.SpotifyAPI;
+import com.spotifymod.debug.LogBuffer;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk cache of each profile's playlists and their tracks, stored next to
+ * spotify_profiles.json. Tracks are stored with the playlist's snapshot_id and
+ * are only served while Spotify still reports that same snapshot. A playlist's
+ * tracks are stored page by page as they load, so a partly loaded playlist
+ * reopens with what it had and continues from there.
+ *
+ * Updates only change the cache in memory. The file is rewritten on a
+ * background thread a moment later, once for however many updates came in
+ * meanwhile, so loading a long playlist doesn't rewrite it for every page.
+ */
+public class LibraryCache {
+    private static final String DEFAULT_PROFILE = "default";
+    private static final long SAVE_DELAY_MS = 2000;
+
+    private final File libraryFile;
+    private final ProfileManager profileManager;
+    private final Gson gson;
+    // Profile ID -> library, loaded on first use
+    private Map<String, Library> libraries;
+    private final ScheduledExecutorService writer;
+    // A write is scheduled and will pick up every change made before it runs
+    private boolean savePending = false;
+
+    private static class Library {
+        List<SpotifyAPI.Playlist> playlists;
+        Map<String, CachedTracks> tracks = new HashMap<>();
+    }
+
+    private static class CachedTracks {
+        String snapshotId;
+        List<SpotifyAPI.PlaylistTrack> tracks;
+        // Playlist offset loaded up to, and the playlist's total; null in
+        // entries written before partial playlists were cached, which are complete
+        Integer loadedOffset;
+        Integer total;
+    }
+
+    /**
+     * Tracks cached for a playlist: everything up to {@code loadedOffset}, out of {@code total}.
+     */
+    public static class TrackPages {
+        public final List<SpotifyAPI.PlaylistTrack> tracks;
+        public final int loadedOffset;
+        public final int total;
+
+        TrackPages(List<SpotifyAPI.PlaylistTrack> tracks, int loadedOffset, int total) {
+            this.tracks = tracks;
+            this.loadedOffset = loadedOffset;
+            this.total = total;
+        }
+
+        public boolean isComplete() {
+            return loadedOffset >= total;
+        }
+    }
+
+    public LibraryCache(File configDir, ProfileManager profileManager) {
+        this.libraryFile = new File(configDir, "spotify_library.json");
+        this.profileManager = profileManager;
+        // Not pretty printed, large playlists make this file big
+        this.gson = new Gson();
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "LibraryCache-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Playlists from the last successful fetch, or null if none are cached.
+     */
+    public synchronized List<SpotifyAPI.Playlist> getPlaylists() {
+        Library library = getLibrary();
+        return library.playlists != null ? new ArrayList<>(library.playlists) : null;
+    }
+
+    /**
+     * Replace the cached playlists. Tracks of playlists that were removed or
+     * whose snapshot changed are dropped.
+     */
+    public synchronized void putPlaylists(List<SpotifyAPI.Playlist> playlists) {
+        Library library = getLibrary();
+        library.playlists = new ArrayList<>(playlists);
+
+        Map<String, String> snapshots = new HashMap<>();
+        for (SpotifyAPI.Playlist playlist : playlists) {
+            snapshots.put(playlist.id, playlist.snapshotId);
+        }
+        library.tracks.entrySet().removeIf(entry -> {
+            String snapshotId = snapshots.get(entry.getKey());
+            return snapshotId == null || !snapshotId.equals(entry.getValue().snapshotId);
+        });
+        saveLater();
+    }
+
+    /**
+     * Cached tracks for the playlist, or null if none are cached for its current snapshot.
+     */
+    public synchronized TrackPages getTracks(SpotifyAPI.Playlist playlist) {
+        if (playlist.snapshotId == null) {
+            return null;
+        }
+        CachedTracks cached = getLibrary().tracks.get(playlist.id);
+        if (cached == null || !playlist.snapshotId.equals(cached.snapshotId)) {
+            return null;
+        }
+        int count = cached.tracks.size();
+        return new TrackPages(new ArrayList<>(cached.tracks),
+                cached.loadedOffset != null ? cached.loadedOffset : count,
+                cached.total != null ? cached.total : count);
+    }
+
+    /**
+     * Store the tracks loaded so far: every page up to {@code loadedOffset} of {@code total}.
+     */
+    public synchronized void putTracks(SpotifyAPI.Playlist playlist, List<SpotifyAPI.PlaylistTrack> tracks,
+                                       int loadedOffset, int total) {
+        if (playlist.snapshotId == null) {
+            return;
+        }
+        Library library = getLibrary();
+        // Pages are cached from whichever HTTP thread finished them; don't let an older one win
+        CachedTracks existing = library.tracks.get(playlist.id);
+        if (existing != null && playlist.snapshotId.equals(existing.snapshotId)
+                && existing.loadedOffset != null && existing.loadedOffset >= loadedOffset) {
+            return;
+        }
+        CachedTracks cached = new CachedTracks();
+        cached.snapshotId = playlist.snapshotId;
+        cached.tracks = new ArrayList<>(tracks);
+        cached.loadedOffset = loadedOffset;
+        cached.total = total;
+        library.tracks.put(playlist.id, cached);
+        saveLater();
+    }
+
+    private Library getLibrary() {
+        if (libraries == null) {
+            load();
+        }
+        UserProfile profile = profileManager.getActiveProfile();
+        String key = profile != null ? profile.getProfileId() : DEFAULT_PROFILE;
+        Library library = libraries.get(key);
+        if (library == null) {
+            library = new Library();
+            libraries.put(key, library);
+        }
+        return library;
+    }
+
+    private void load() {
+        libraries = new HashMap<>();
+        if (!libraryFile.exists()) {
+            return;
+        }
+
+        try (Reader reader = new BufferedReader(new FileReader(libraryFile))) {
+            Type mapType = new TypeToken<HashMap<String, Library>>(){}.getType();
+            Map<String, Library> loaded = gson.fromJson(reader, mapType);
+            if (loaded != null) {
+                for (Map.Entry<String, Library> entry : loaded.entrySet()) {
+                    Library library = entry.getValue();
+                    if (library.tracks == null) {
+                        library.tracks = new HashMap<>();
+                    }
+                    libraries.put(entry.getKey(), library);
+                }
+            }
+        } catch (Exception e) {
+            LogBuffer.get().error("Failed to load library cache: " + e.getMessage());
+        }
+    }
+
+    // Call holding the lock
+    private void saveLater() {
+        if (savePending) {
+            return;
+        }
+        savePending = true;
+        writer.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // On the writer thread; only the serialising happens under the lock, not the disk write
+    private void save() {
+        String json;
+        synchronized (this) {
+            savePending = false;
+            json = gson.toJson(libraries);
+        }
+        try {
+            if (!libraryFile.getParentFile().exists()) {
+                libraryFile.getParentFile().mkdirs();
+            }
+
+            try (Writer out = new BufferedWriter(new FileWriter(libraryFile))) {
+                out.write(json);
+            }
+        } catch (Exception e) {
+            LogBuffer.get().error("Failed to save library cache: " + e.getMessage());
+        }
+    }
+}
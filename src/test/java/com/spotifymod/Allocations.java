@@ -0,0 +1,37 @@
+package com.spotifymod;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, for the allocation checks in the tests.
+ * Uses HotSpot's per-thread counter; tests that need it skip themselves elsewhere.
+ */
+public final class Allocations {
+
+    private Allocations() {
+    }
+
+    public static boolean isSupported() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+    }
+
+    /**
+     * Run the task {@code iterations} times after a warm-up, returning the bytes
+     * allocated by the measured runs.
+     */
+    public static long measure(int iterations, Runnable task) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        // Warm up so class loading and JIT don't count
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long before = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return bean.getThreadAllocatedBytes(thread) - before;
+    }
+}
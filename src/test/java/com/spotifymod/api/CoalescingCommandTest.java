@@ -0,0 +1,99 @@
+package com.spotifymod.api;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingCommandTest {
+    private final List<Integer> sent = new ArrayList<>();
+    private final List<CompletableFuture<Boolean>> requests = new ArrayList<>();
+
+    // Records each value and hands back a request the test completes
+    private CompletableFuture<Boolean> send(int value) {
+        sent.add(value);
+        CompletableFuture<Boolean> request = new CompletableFuture<>();
+        requests.add(request);
+        return request;
+    }
+
+    @Test
+    public void onlyNewestPendingValueIsSent() {
+        CoalescingCommand<Integer> command = new CoalescingCommand<>(this::send);
+        CompletableFuture<Boolean> first = command.submit(10);
+        CompletableFuture<Boolean> second = command.submit(20);
+        CompletableFuture<Boolean> third = command.submit(30);
+        assertEquals(1, sent.size());
+
+        requests.get(0).complete(true);
+        assertTrue(first.join());
+        assertFalse(second.isDone());
+        assertEquals(30, (int) sent.get(1));
+
+        requests.get(1).complete(true);
+        assertTrue(second.join());
+        assertTrue(third.join());
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void failedRequestFailsItsWaitersOnly() {
+        CoalescingCommand<Integer> command = new CoalescingCommand<>(this::send);
+        CompletableFuture<Boolean> first = command.submit(10);
+        CompletableFuture<Boolean> second = command.submit(20);
+        requests.get(0).completeExceptionally(new RuntimeException("network"));
+        assertFalse(first.join());
+        requests.get(1).complete(true);
+        assertTrue(second.join());
+    }
+
+    @Test
+    public void throwingSenderDoesNotWedgeTheCommand() {
+        boolean[] fail = {true};
+        CoalescingCommand<Integer> command = new CoalescingCommand<>(value -> {
+            if (fail[0]) {
+                throw new IllegalStateException("not ready");
+            }
+            return send(value);
+        });
+        assertFalse(command.submit(10).join());
+
+        fail[0] = false;
+        CompletableFuture<Boolean> next = command.submit(20);
+        assertEquals(1, sent.size());
+        requests.get(0).complete(true);
+        assertTrue(next.join());
+    }
+
+    @Test
+    public void pendingValueDrainsAfterThrow() {
+        boolean[] fail = {false};
+        CoalescingCommand<Integer> command = new CoalescingCommand<>(value -> {
+            if (fail[0]) {
+                throw new IllegalStateException("not ready");
+            }
+            return send(value);
+        });
+        CompletableFuture<Boolean> first = command.submit(10);
+        CompletableFuture<Boolean> second = command.submit(20);
+        CompletableFuture<Boolean> third = command.submit(30);
+
+        // The queued value's send throws: its waiters fail, and the channel is free again
+        fail[0] = true;
+        requests.get(0).complete(true);
+        assertTrue(first.join());
+        assertFalse(second.join());
+        assertFalse(third.join());
+
+        fail[0] = false;
+        CompletableFuture<Boolean> fourth = command.submit(40);
+        assertEquals(40, (int) sent.get(sent.size() - 1));
+        requests.get(requests.size() - 1).complete(true);
+        assertTrue(fourth.join());
+    }
+}
@@ -0,0 +1,167 @@
+package com.spotifymod.api;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.spotifymod.Allocations;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpotifyJsonDecoderTest {
+
+    private static JsonReader fixture(String name) {
+        InputStream in = SpotifyJsonDecoderTest.class.getResourceAsStream("/fixtures/" + name);
+        assertNotNull("missing fixture " + name, in);
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void decodesCurrentlyPlaying() throws IOException {
+        SpotifyAPI.TrackInfo track = SpotifyJsonDecoder.decodeCurrentlyPlaying(fixture("currently_playing.json"));
+        assertNotNull(track);
+        assertEquals("69kOkLUCkxIZYexIgSG8rq", track.id);
+        assertEquals("spotify:track:69kOkLUCkxIZYexIgSG8rq", track.uri);
+        assertEquals("Get Lucky (feat. Pharrell Williams & Nile Rodgers)", track.name);
+        assertEquals("Daft Punk", track.artist);
+        assertEquals("Random Access Memories", track.album);
+        assertEquals(369626, track.durationMs);
+        assertEquals(83512, track.progressMs);
+        assertTrue(track.isPlaying);
+    }
+
+    @Test
+    public void currentlyPlayingWithoutItemIsNull() throws IOException {
+        assertNull(SpotifyJsonDecoder.decodeCurrentlyPlaying(fixture("currently_playing_ad.json")));
+    }
+
+    @Test
+    public void decodesPlaylistsSkippingNullAndIncomplete() throws IOException {
+        List<SpotifyAPI.Playlist> playlists = SpotifyJsonDecoder.decodePlaylists(fixture("playlists.json"));
+        assertEquals(1, playlists.size());
+        SpotifyAPI.Playlist playlist = playlists.get(0);
+        assertEquals("3cEYpjA9oz9GiPac4AsH4n", playlist.id);
+        assertEquals("Road Trip", playlist.name);
+        assertEquals("spotify:playlist:3cEYpjA9oz9GiPac4AsH4n", playlist.uri);
+        assertEquals(250, playlist.trackCount);
+        assertEquals("MTY4NjY2NTYwMCwwMDAwMDAwMA==", playlist.snapshotId);
+    }
+
+    @Test
+    public void decodesPlaylistTrackPage() throws IOException {
+        SpotifyAPI.PlaylistTrackPage page = SpotifyJsonDecoder.decodePlaylistTracks(fixture("playlist_tracks.json"));
+        assertEquals(100, page.offset);
+        assertEquals(250, page.total);
+        assertTrue(page.hasNext);
+
+        // The null track and the nameless one are dropped; local files are kept
+        assertEquals(2, page.tracks.size());
+        SpotifyAPI.PlaylistTrack first = page.tracks.get(0);
+        assertEquals("spotify:track:0DiWol3AO6WpXZgp0goxAV", first.uri);
+        assertEquals("One More Time", first.name);
+        assertEquals("Daft Punk", first.artist);
+        assertEquals(320357, first.durationMs);
+        assertEquals("spotify:local:Someone::Home+Recording:200", page.tracks.get(1).uri);
+        assertEquals("Someone", page.tracks.get(1).artist);
+    }
+
+    @Test
+    public void lastPlaylistPageHasNoNext() throws IOException {
+        String json = "{\"items\": [], \"next\": null, \"offset\": 200, \"total\": 200}";
+        SpotifyAPI.PlaylistTrackPage page = SpotifyJsonDecoder.decodePlaylistTracks(new JsonReader(new StringReader(json)));
+        assertFalse(page.hasNext);
+        assertTrue(page.tracks.isEmpty());
+    }
+
+    @Test
+    public void searchListsTracksBeforeArtists() throws IOException {
+        List<SpotifyAPI.SearchResult> results = SpotifyJsonDecoder.decodeSearch(fixture("search.json"));
+        assertEquals(2, results.size());
+        SpotifyAPI.SearchResult track = results.get(0);
+        assertEquals("track", track.type);
+        assertEquals("Get Lucky", track.name);
+        assertEquals("Daft Punk", track.artist);
+        assertEquals("Random Access Memories", track.album);
+        assertEquals(369626, track.durationMs);
+        SpotifyAPI.SearchResult artist = results.get(1);
+        assertEquals("artist", artist.type);
+        assertEquals("Daft Punk", artist.name);
+        assertEquals("spotify:artist:4tZwfgrHOc3mvqYlEYSvVi", artist.uri);
+    }
+
+    @Test
+    public void searchWithNullSectionIsEmpty() throws IOException {
+        String json = "{\"tracks\": null}";
+        assertTrue(SpotifyJsonDecoder.decodeSearch(new JsonReader(new StringReader(json))).isEmpty());
+    }
+
+    @Test
+    public void queueStopsAtLimit() throws IOException {
+        List<SpotifyAPI.QueueTrack> queue = SpotifyJsonDecoder.decodeQueue(fixture("queue.json"), 2);
+        assertEquals(2, queue.size());
+        assertEquals("One More Time", queue.get(0).name);
+        assertEquals("Discovery", queue.get(0).album);
+        assertEquals("Aerodynamic", queue.get(1).name);
+        assertEquals(3, SpotifyJsonDecoder.decodeQueue(fixture("queue.json"), 10).size());
+    }
+
+    /**
+     * The streaming decoder should allocate well under what the old path did:
+     * the body as one String, then the whole response as a JsonObject tree.
+     */
+    @Test
+    public void streamingAllocatesLessThanTree() {
+        Assume.assumeTrue(Allocations.isSupported());
+        byte[] body = fullPlaylistPage().getBytes(StandardCharsets.UTF_8);
+
+        long streaming = Allocations.measure(50, () -> {
+            try {
+                SpotifyJsonDecoder.decodePlaylistTracks(new JsonReader(
+                        new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        long tree = Allocations.measure(50, () -> {
+            String text = new String(body, StandardCharsets.UTF_8);
+            new JsonParser().parse(new StringReader(text));
+        });
+        assertTrue("streaming " + streaming + " bytes vs tree " + tree, streaming * 2 < tree);
+    }
+
+    // A 100-track page shaped like the real thing, markets and all
+    private static String fullPlaylistPage() {
+        StringBuilder markets = new StringBuilder();
+        for (int i = 0; i < 180; i++) {
+            if (i > 0) markets.append(',');
+            markets.append('"').append((char) ('A' + i / 26 % 26)).append((char) ('A' + i % 26)).append('"');
+        }
+        StringBuilder json = new StringBuilder("{\"items\": [");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"added_at\": \"2023-01-01T00:00:00Z\", \"track\": {")
+                    .append("\"album\": {\"name\": \"Album ").append(i).append("\", \"available_markets\": [").append(markets)
+                    .append("], \"images\": [{\"height\": 640, \"url\": \"https://i.scdn.co/image/").append(i).append("\", \"width\": 640}]},")
+                    .append("\"artists\": [{\"name\": \"Artist ").append(i).append("\", \"uri\": \"spotify:artist:").append(i).append("\"}],")
+                    .append("\"available_markets\": [").append(markets).append("],")
+                    .append("\"duration_ms\": ").append(180000 + i).append(',')
+                    .append("\"external_ids\": {\"isrc\": \"USQX9130").append(i).append("\"},")
+                    .append("\"id\": \"id").append(i).append("\", \"name\": \"Track ").append(i).append("\",")
+                    .append("\"uri\": \"spotify:track:id").append(i).append("\"}}");
+        }
+        json.append("], \"next\": null, \"offset\": 0, \"total\": 100}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.spotifymod.gui;
+
+import com.spotifymod.Allocations;
+import com.spotifymod.api.SpotifyAPI;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class HudViewModelTest {
+    private HudViewModel view;
+
+    @Before
+    public void setUp() {
+        view = new HudViewModel();
+    }
+
+    // setTrack measures strings with a FontRenderer, which needs a GL context;
+    // the progress line only reads the track
+    private void showTrack(int durationMs) throws ReflectiveOperationException {
+        SpotifyAPI.TrackInfo track = new SpotifyAPI.TrackInfo("id", "spotify:track:id", "Name", "Artist", "Album",
+                durationMs, 0, true);
+        Field field = HudViewModel.class.getDeclaredField("track");
+        field.setAccessible(true);
+        field.set(view, track);
+    }
+
+    @Test
+    public void progressMatchesStringFormat() throws ReflectiveOperationException {
+        int[] durations = {0, 59_999, 61_000, 3_599_000, 6_000_000, 60_000_000};
+        int[] positions = {0, 999, 1_000, 9_999, 59_999, 60_000, 605_000, 3_600_000, 5_999_999, 59_999_999};
+        for (int durationMs : durations) {
+            showTrack(durationMs);
+            for (int positionMs : positions) {
+                String expected = String.format("%d:%02d / %d:%02d",
+                        positionMs / 60000, positionMs / 1000 % 60, durationMs / 60000, durationMs / 1000 % 60);
+                assertEquals(expected, view.getProgressText(positionMs));
+            }
+        }
+    }
+
+    @Test
+    public void progressRebuiltOnlyWhenSecondChanges() throws ReflectiveOperationException {
+        showTrack(200_000);
+        String first = view.getProgressText(12_000);
+        assertSame(first, view.getProgressText(12_999));
+        String next = view.getProgressText(13_000);
+        assertNotSame(first, next);
+        assertEquals("0:13 / 3:20", next);
+    }
+
+    @Test
+    public void steadyStateProgressDoesNotAllocate() throws ReflectiveOperationException {
+        Assume.assumeTrue(Allocations.isSupported());
+        showTrack(200_000);
+        view.getProgressText(42_000);
+        long allocated = Allocations.measure(10_000, () -> view.getProgressText(42_500));
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void schemeResolvedFromName() {
+        assertSame(HudColorScheme.DEFAULT, view.getScheme(null));
+        assertSame(HudColorScheme.DEFAULT, view.getScheme(""));
+        assertSame(HudColorScheme.OCEAN, view.getScheme("ocean"));
+        assertSame(HudColorScheme.DEFAULT, view.getScheme("no such scheme"));
+    }
+}
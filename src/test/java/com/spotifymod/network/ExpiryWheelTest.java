@@ -0,0 +1,131 @@
+package com.spotifymod.network;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpiryWheelTest {
+    private static final long MS = 1_000_000L;
+
+    // Eight 1 ms slots, so anything past 8 ms is more than a round away
+    private ExpiryWheel<String> wheel;
+    private long base;
+
+    @Before
+    public void setUp() {
+        wheel = new ExpiryWheel<>(8, MS);
+        base = System.nanoTime();
+    }
+
+    private List<String> expire(long atMs) {
+        List<String> expired = new ArrayList<>();
+        wheel.expire(base + atMs * MS, expired::add);
+        Collections.sort(expired);
+        return expired;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slotCountMustBePowerOfTwo() {
+        new ExpiryWheel<String>(6, MS);
+    }
+
+    @Test
+    public void expiresOnlyDueKeys() {
+        wheel.schedule("a", base + 2 * MS);
+        wheel.schedule("b", base + 5 * MS);
+        wheel.schedule("c", base + 100 * MS);
+        assertEquals(3, wheel.size());
+
+        assertEquals(Collections.emptyList(), expire(1));
+        assertEquals(Arrays.asList("a"), expire(3));
+        assertEquals(Arrays.asList("b"), expire(50));
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.emptyList(), expire(99));
+        assertEquals(Arrays.asList("c"), expire(100));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void deadlineLaterInCurrentTickWaits() {
+        expire(10);
+        wheel.schedule("a", base + 10 * MS + MS / 2);
+        assertEquals(Collections.emptyList(), expire(10));
+        assertEquals(Arrays.asList("a"), expire(11));
+    }
+
+    @Test
+    public void pastDeadlineExpiresOnNextCall() {
+        expire(20);
+        wheel.schedule("late", base + 5 * MS);
+        assertEquals(Arrays.asList("late"), expire(20));
+    }
+
+    @Test
+    public void keysInSameSlotDifferentRounds() {
+        // 3 ms and 11 ms share a slot
+        wheel.schedule("soon", base + 3 * MS);
+        wheel.schedule("later", base + 11 * MS);
+        assertEquals(Arrays.asList("soon"), expire(4));
+        assertEquals(Collections.emptyList(), expire(10));
+        assertEquals(Arrays.asList("later"), expire(12));
+    }
+
+    @Test
+    public void longGapExpiresEverything() {
+        for (int i = 0; i < 40; i++) {
+            wheel.schedule("k" + i, base + i * MS);
+        }
+        assertEquals(40, expire(1000).size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void rescheduleMovesDeadline() {
+        wheel.schedule("a", base + 2 * MS);
+        wheel.schedule("a", base + 20 * MS);
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.emptyList(), expire(10));
+        assertEquals(Arrays.asList("a"), expire(20));
+
+        wheel.schedule("b", base + 40 * MS);
+        wheel.schedule("b", base + 25 * MS);
+        assertEquals(Arrays.asList("b"), expire(30));
+    }
+
+    @Test
+    public void removedKeysNeverExpire() {
+        wheel.schedule("a", base + 2 * MS);
+        wheel.schedule("b", base + 2 * MS);
+        wheel.schedule("c", base + 2 * MS);
+        wheel.remove("b");
+        wheel.remove("missing");
+        assertEquals(2, wheel.size());
+        assertEquals(Arrays.asList("a", "c"), expire(5));
+    }
+
+    @Test
+    public void peekEarliestAcrossRounds() {
+        assertNull(wheel.peekEarliest());
+        wheel.schedule("far", base + 30 * MS);
+        assertEquals("far", wheel.peekEarliest());
+        // Same slot as "far", a round sooner
+        wheel.schedule("nearer", base + 22 * MS);
+        assertEquals("nearer", wheel.peekEarliest());
+        wheel.schedule("soonest", base + 3 * MS);
+        assertEquals("soonest", wheel.peekEarliest());
+
+        wheel.remove("soonest");
+        assertEquals("nearer", wheel.peekEarliest());
+        expire(25);
+        assertEquals("far", wheel.peekEarliest());
+        expire(30);
+        assertNull(wheel.peekEarliest());
+    }
+}
@@ -0,0 +1,106 @@
+package com.spotifymod.network;
+
+import com.spotifymod.Allocations;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StringInternerTest {
+
+    private static StringInterner interner(int capacity) {
+        return new StringInterner(capacity, (buf, index, length) -> buf.toString(index, length, StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuf bytesOf(String str) {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(str.getBytes(StandardCharsets.UTF_8));
+        return buf;
+    }
+
+    private static String read(StringInterner interner, String str) {
+        ByteBuf buf = bytesOf(str);
+        return interner.read(buf, buf.readableBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePowerOfTwo() {
+        interner(12);
+    }
+
+    @Test
+    public void repeatReturnsSameString() {
+        StringInterner interner = interner(64);
+        String first = read(interner, "Get Lucky");
+        assertEquals("Get Lucky", first);
+        assertSame(first, read(interner, "Get Lucky"));
+    }
+
+    @Test
+    public void readsOnlyTheGivenBytes() {
+        StringInterner interner = interner(64);
+        ByteBuf buf = bytesOf("Daft PunkRandom Access Memories");
+        assertEquals("Daft Punk", interner.read(buf, 9));
+        assertEquals(9, buf.readerIndex());
+        // A hit advances the reader index just the same
+        buf.readerIndex(0);
+        interner.read(buf, 9);
+        assertEquals(9, buf.readerIndex());
+        assertEquals("Random Access Memories", interner.read(buf, buf.readableBytes()));
+    }
+
+    @Test
+    public void distinctStringsStayDistinct() {
+        StringInterner interner = interner(64);
+        assertEquals("One More Time", read(interner, "One More Time"));
+        assertEquals("One More Tim", read(interner, "One More Tim"));
+        assertEquals("\u00dcn\u00efc\u00f6d\u00e9 \u266b", read(interner, "\u00dcn\u00efc\u00f6d\u00e9 \u266b"));
+        assertEquals("", read(interner, ""));
+        assertEquals("One More Time", read(interner, "One More Time"));
+    }
+
+    @Test
+    public void evictionNeverReturnsWrongString() {
+        // Far more strings than slots, so probes fill up and entries are replaced
+        StringInterner interner = interner(8);
+        List<String> held = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                String value = read(interner, "Track " + i);
+                assertEquals("Track " + i, value);
+                held.add(value);
+            }
+        }
+        // The most recent string is still in the table
+        assertSame(held.get(held.size() - 1), read(interner, "Track 99"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void lengthPastBufferRejected() {
+        ByteBuf buf = bytesOf("short");
+        interner(64).read(buf, 6);
+    }
+
+    @Test
+    public void hitDoesNotAllocate() {
+        Assume.assumeTrue(Allocations.isSupported());
+        StringInterner interner = interner(64);
+        ByteBuf buf = bytesOf("spotify:track:4uLU6hMCjMI75M1A2tKUQC");
+        int length = buf.readableBytes();
+        // Held so the table's weak reference stays valid
+        String first = interner.read(buf, length);
+        long allocated = Allocations.measure(10_000, () -> {
+            buf.readerIndex(0);
+            interner.read(buf, length);
+        });
+        assertEquals(0, allocated);
+        assertSame(first, read(interner, "spotify:track:4uLU6hMCjMI75M1A2tKUQC"));
+    }
+}
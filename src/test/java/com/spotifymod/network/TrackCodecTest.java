@@ -0,0 +1,210 @@
+package com.spotifymod.network;
+
+import com.spotifymod.Allocations;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TrackCodecTest {
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    @Test
+    public void varIntRoundTrip() {
+        int[] values = {0, 1, 127, 128, 300, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        for (int value : values) {
+            ByteBuf buf = Unpooled.buffer();
+            TrackCodec.writeVarInt(buf, value);
+            assertEquals("size of " + value, TrackCodec.varIntSize(value), buf.readableBytes());
+            assertEquals(value, TrackCodec.readVarInt(buf));
+            assertEquals(0, buf.readableBytes());
+        }
+    }
+
+    @Test
+    public void varIntSizes() {
+        assertEquals(1, TrackCodec.varIntSize(0));
+        assertEquals(1, TrackCodec.varIntSize(127));
+        assertEquals(2, TrackCodec.varIntSize(128));
+        assertEquals(3, TrackCodec.varIntSize(16384));
+        assertEquals(5, TrackCodec.varIntSize(Integer.MAX_VALUE));
+        assertEquals(5, TrackCodec.varIntSize(-1));
+    }
+
+    @Test
+    public void varIntIsLeb128() {
+        ByteBuf buf = Unpooled.buffer();
+        TrackCodec.writeVarInt(buf, 300);
+        assertEquals((byte) 0xAC, buf.readByte());
+        assertEquals((byte) 0x02, buf.readByte());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overlongVarIntRejected() {
+        ByteBuf buf = Unpooled.buffer();
+        for (int i = 0; i < 6; i++) {
+            buf.writeByte(0x80);
+        }
+        TrackCodec.readVarInt(buf);
+    }
+
+    @Test
+    public void trackIdRoundTrip() {
+        String[] ids = {"4uLU6hMCjMI75M1A2tKUQC", "69kOkLUCkxIZYexIgSG8rq", "0000000000000000000000", "0000000000000000000001"};
+        for (String id : ids) {
+            ByteBuf buf = Unpooled.buffer();
+            TrackCodec.writeTrackId(buf, id);
+            assertEquals(TrackCodec.PACKED_TRACK_ID_BYTES, buf.readableBytes());
+            assertEquals(id, TrackCodec.readTrackId(buf));
+            assertEquals(0, buf.readableBytes());
+        }
+    }
+
+    @Test
+    public void trackIdPacksToItsBase62Value() {
+        Random random = new Random(17);
+        BigInteger limit = BigInteger.ONE.shiftLeft(128);
+        for (int n = 0; n < 1000; n++) {
+            char[] chars = new char[22];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = BASE62.charAt(random.nextInt(62));
+            }
+            String id = new String(chars);
+            BigInteger value = BigInteger.ZERO;
+            for (char c : chars) {
+                value = value.multiply(BigInteger.valueOf(62)).add(BigInteger.valueOf(BASE62.indexOf(c)));
+            }
+            boolean fits = value.compareTo(limit) < 0;
+            assertEquals(id, fits, TrackCodec.isPackable(id));
+            if (!fits) continue;
+
+            ByteBuf buf = Unpooled.buffer();
+            TrackCodec.writeTrackId(buf, id);
+            byte[] packed = new byte[TrackCodec.PACKED_TRACK_ID_BYTES];
+            buf.readBytes(packed);
+            assertEquals(id, value, new BigInteger(1, packed));
+        }
+    }
+
+    @Test
+    public void trackIdDecodedInPlace() {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(42);
+        TrackCodec.writeTrackId(buf, "4uLU6hMCjMI75M1A2tKUQC");
+        assertEquals("4uLU6hMCjMI75M1A2tKUQC", TrackCodec.getTrackId(buf, 1));
+        assertEquals(0, buf.readerIndex());
+    }
+
+    @Test
+    public void unpackableTrackIds() {
+        assertFalse(TrackCodec.isPackable(null));
+        assertFalse(TrackCodec.isPackable(""));
+        assertFalse(TrackCodec.isPackable("4uLU6hMCjMI75M1A2tKUQ"));
+        assertFalse(TrackCodec.isPackable("4uLU6hMCjMI75M1A2tKUQCx"));
+        assertFalse(TrackCodec.isPackable("4uLU6hMCjMI75M1A2tKU-C"));
+        // 62^22 is a little over 2^130, so the top of the range doesn't fit
+        assertFalse(TrackCodec.isPackable("ZZZZZZZZZZZZZZZZZZZZZZ"));
+        assertTrue(TrackCodec.isPackable("0000000000000000000000"));
+    }
+
+    @Test
+    public void stringRoundTrip() {
+        String[] strings = {
+                "", "Get Lucky", "Beyonc\u00e9", "\u6771\u4eac", "\ud83c\udfb5 Party \ud83c\udfb6",
+                // Either side of the 128-byte one-byte-length limit
+                repeat("a", 127), repeat("a", 128), repeat("\u00e9", 63) + "a", repeat("\u00e9", 64),
+                repeat("\u266b", 42) + "ab", repeat("\u266b", 43), repeat("\ud83c\udfb5", 200)
+        };
+        for (String str : strings) {
+            byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+            ByteBuf buf = Unpooled.buffer();
+            buf.writeByte(0x55);
+            TrackCodec.writeString(buf, str);
+            buf.writeByte(0xAA);
+
+            assertEquals(0x55, buf.readByte() & 0xFF);
+            int prefix = buf.readableBytes() - utf8.length - 1;
+            assertEquals("prefix for " + utf8.length + " bytes", TrackCodec.varIntSize(utf8.length), prefix);
+            int start = buf.readerIndex();
+            assertEquals(utf8.length, TrackCodec.readVarInt(buf));
+            byte[] written = new byte[utf8.length];
+            buf.readBytes(written);
+            assertArrayEquals(utf8, written);
+
+            buf.readerIndex(start);
+            assertEquals(str, TrackCodec.readString(buf));
+            assertEquals(0xAA, buf.readByte() & 0xFF);
+        }
+    }
+
+    @Test
+    public void unpairedSurrogatesBecomeQuestionMarks() {
+        String[] strings = {"a\ud800b", "\udc00", "x\ud83d", "\udfb5\ud83c", "ok \ud83c\udfb5 \ud83c"};
+        for (String str : strings) {
+            ByteBuf buf = Unpooled.buffer();
+            int length = TrackCodec.writeUtf8(buf, str);
+            byte[] written = new byte[length];
+            buf.readBytes(written);
+            // Same replacement as String.getBytes
+            assertArrayEquals(str.getBytes(StandardCharsets.UTF_8), written);
+        }
+        ByteBuf buf = Unpooled.buffer();
+        TrackCodec.writeString(buf, "a\ud800b");
+        assertEquals("a?b", TrackCodec.readString(buf));
+    }
+
+    @Test
+    public void readStringRejectsBadLengths() {
+        int[] lengths = {TrackCodec.MAX_STRING_BYTES + 1, 10, -1};
+        for (int length : lengths) {
+            ByteBuf buf = Unpooled.buffer();
+            TrackCodec.writeVarInt(buf, length);
+            buf.writeBytes(new byte[5]);
+            try {
+                TrackCodec.readString(buf);
+                fail("accepted length " + length);
+            } catch (IllegalArgumentException expected) {
+                // rejected before reading any bytes
+            }
+        }
+    }
+
+    @Test
+    public void writeStringIntoPreallocatedBufferDoesNotAllocate() {
+        Assume.assumeTrue(Allocations.isSupported());
+        ByteBuf buf = Unpooled.buffer(512);
+        String shortStr = "Beyonc\u00e9 \ud83c\udfb5";
+        String longStr = repeat("\u266b", 60);
+        long allocated = Allocations.measure(10_000, () -> {
+            buf.clear();
+            TrackCodec.writeString(buf, shortStr);
+            TrackCodec.writeString(buf, longStr);
+        });
+        assertEquals(0, allocated);
+
+        buf.clear();
+        TrackCodec.writeString(buf, longStr);
+        byte[] expected = longStr.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, TrackCodec.readVarInt(buf));
+        assertEquals(expected.length, buf.readableBytes());
+        assertEquals(longStr, buf.toString(buf.readerIndex(), expected.length, StandardCharsets.UTF_8));
+    }
+
+    private static String repeat(String str, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(str);
+        }
+        return sb.toString();
+    }
+}
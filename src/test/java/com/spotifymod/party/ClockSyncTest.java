@@ -0,0 +1,103 @@
+package com.spotifymod.party;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClockSyncTest {
+    // The host's clock runs this far ahead of ours
+    private static final long OFFSET = 12_345;
+
+    private final ClockSync sync = new ClockSync();
+
+    // One exchange: the ping takes `out` ms to arrive, the host holds it `hold`
+    // ms, and the pong takes `back` ms
+    private boolean exchange(long t0, long out, long hold, long back) {
+        sync.pingSent(t0);
+        long t1 = t0 + out + OFFSET;
+        long t2 = t1 + hold;
+        long t3 = t2 - OFFSET + back;
+        return sync.addSample(t0, t1, t2, t3);
+    }
+
+    @Test
+    public void symmetricExchangeGivesExactOffset() {
+        assertFalse(sync.hasEstimate());
+        assertTrue(exchange(1_000, 40, 5, 40));
+        assertTrue(sync.hasEstimate());
+        assertEquals(OFFSET, sync.getOffsetMs());
+        assertEquals(80, sync.getRttMs());
+        assertEquals(5_000 + OFFSET, sync.toHostTime(5_000));
+    }
+
+    @Test
+    public void lowestRoundTripWins() {
+        exchange(1_000, 300, 0, 20);
+        exchange(2_000, 15, 2, 15);
+        exchange(3_000, 20, 0, 400);
+        assertEquals(3, sync.getSampleCount());
+        assertEquals(30, sync.getRttMs());
+        assertEquals(OFFSET, sync.getOffsetMs());
+    }
+
+    @Test
+    public void skewedSampleOffWithinHalfRoundTrip() {
+        exchange(1_000, 100, 0, 10);
+        long error = Math.abs(sync.getOffsetMs() - OFFSET);
+        assertTrue(error <= sync.getRttMs() / 2);
+    }
+
+    @Test
+    public void unknownOrReplayedPongsIgnored() {
+        assertFalse(sync.addSample(1_000, 1_040 + OFFSET, 1_040 + OFFSET, 1_080));
+        assertTrue(exchange(2_000, 40, 0, 40));
+        // Same pong again
+        assertFalse(sync.addSample(2_000, 2_040 + OFFSET, 2_040 + OFFSET, 2_080));
+        assertEquals(1, sync.getSampleCount());
+    }
+
+    @Test
+    public void impossibleTimingsIgnored() {
+        // Host sent before it received
+        sync.pingSent(1_000);
+        assertFalse(sync.addSample(1_000, 1_050 + OFFSET, 1_040 + OFFSET, 1_100));
+        // Pong arrived before the ping left
+        sync.pingSent(2_000);
+        assertFalse(sync.addSample(2_000, 2_010 + OFFSET, 2_010 + OFFSET, 1_990));
+        // Slower than the limit
+        assertFalse(exchange(3_000, ClockSync.MAX_RTT_MS, 0, 1));
+        assertFalse(sync.hasEstimate());
+    }
+
+    @Test
+    public void latePongWithinLimitAccepted() {
+        sync.pingSent(1_000);
+        assertTrue(sync.isAwaitingPong(3_000));
+        // A burst of further pings doesn't push the first one out
+        for (int i = 1; i <= 4; i++) {
+            sync.pingSent(1_000 + i * 250);
+        }
+        assertTrue(sync.addSample(1_000, 2_500 + OFFSET, 2_500 + OFFSET, 4_000));
+        assertFalse(sync.isAwaitingPong(1_000 + ClockSync.MAX_RTT_MS + 5 * 250));
+    }
+
+    @Test
+    public void unansweredPingsExpire() {
+        sync.pingSent(1_000);
+        assertTrue(sync.isAwaitingPong(1_000 + ClockSync.MAX_RTT_MS));
+        assertFalse(sync.isAwaitingPong(1_001 + ClockSync.MAX_RTT_MS));
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        exchange(1_000, 40, 0, 40);
+        sync.pingSent(2_000);
+        sync.reset();
+        assertFalse(sync.hasEstimate());
+        assertEquals(0, sync.getSampleCount());
+        assertFalse(sync.isAwaitingPong(2_000));
+        assertFalse(sync.addSample(2_000, 2_040 + OFFSET, 2_040 + OFFSET, 2_080));
+    }
+}
@@ -0,0 +1,103 @@
+package com.spotifymod.playback;
+
+import com.spotifymod.api.SpotifyAPI;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PollSchedulerTest {
+    private static final ActivityMonitor.Demand FOREGROUND = ActivityMonitor.Demand.FOREGROUND;
+    private static final ActivityMonitor.Demand BACKGROUND = ActivityMonitor.Demand.BACKGROUND;
+    // Long enough that the track end never comes into it
+    private static final int TEN_MINUTES = 600_000;
+
+    private final PollScheduler scheduler = new PollScheduler();
+
+    private static PlaybackSnapshot playing(int progressMs, int durationMs, long fetchedAt) {
+        return new PlaybackSnapshot(new SpotifyAPI.TrackInfo("id", "spotify:track:id", "Name", "Artist", "Album",
+                durationMs, progressMs, true), fetchedAt);
+    }
+
+    private static PlaybackSnapshot paused(long fetchedAt) {
+        return new PlaybackSnapshot(new SpotifyAPI.TrackInfo("id", "spotify:track:id", "Name", "Artist", "Album",
+                TEN_MINUTES, 1000, false), fetchedAt);
+    }
+
+    // The same calls PlaybackStateService makes around one poll
+    private void poll(long startedAt, long finishedAt, PlaybackSnapshot result, ActivityMonitor.Demand demand) {
+        assertTrue("poll at " + startedAt + " wasn't due", scheduler.isPollDue(startedAt));
+        scheduler.onPollStarted(startedAt);
+        assertFalse(scheduler.isPollDue(finishedAt));
+        scheduler.onPollFinished(result, finishedAt, demand);
+    }
+
+    private void assertNextPollAt(long at) {
+        assertFalse("due before " + at, scheduler.isPollDue(at - 1));
+        assertTrue("not due at " + at, scheduler.isPollDue(at));
+    }
+
+    @Test
+    public void firstPollIsDueImmediately() {
+        assertTrue(scheduler.isPollDue(0));
+    }
+
+    @Test
+    public void foregroundPlayingUsesHeartbeat() {
+        poll(1000, 1200, playing(0, TEN_MINUTES, 1200), FOREGROUND);
+        assertNextPollAt(1200 + PollScheduler.HEARTBEAT_INTERVAL);
+    }
+
+    @Test
+    public void idleIntervalIsApplied() {
+        poll(1000, 1200, paused(1200), FOREGROUND);
+        assertNextPollAt(1200 + PollScheduler.IDLE_INTERVAL);
+        poll(1200 + PollScheduler.IDLE_INTERVAL, 31_500, PlaybackSnapshot.EMPTY, FOREGROUND);
+        assertNextPollAt(31_500 + PollScheduler.IDLE_INTERVAL);
+    }
+
+    @Test
+    public void backgroundIntervalsAreApplied() {
+        poll(1000, 1200, playing(0, TEN_MINUTES, 1200), BACKGROUND);
+        assertNextPollAt(1200 + PollScheduler.BACKGROUND_HEARTBEAT_INTERVAL);
+
+        long next = 1200 + PollScheduler.BACKGROUND_HEARTBEAT_INTERVAL;
+        poll(next, next + 200, paused(next + 200), BACKGROUND);
+        assertNextPollAt(next + 200 + PollScheduler.BACKGROUND_IDLE_INTERVAL);
+    }
+
+    @Test
+    public void pollLandsJustAfterTrackEnd() {
+        poll(1000, 1200, playing(170_000, 180_000, 1200), FOREGROUND);
+        assertNextPollAt(1200 + 10_000 + PollScheduler.END_GRACE);
+    }
+
+    @Test
+    public void userActionSpeedsUpPolling() {
+        scheduler.onUserAction(1000);
+        poll(1000, 1200, paused(1200), FOREGROUND);
+        assertNextPollAt(1200 + PollScheduler.FAST_INTERVAL);
+        // Once the window is over it drops back to the idle interval
+        long late = 1000 + PollScheduler.FAST_WINDOW;
+        poll(late, late, paused(late), FOREGROUND);
+        assertNextPollAt(late + PollScheduler.IDLE_INTERVAL);
+    }
+
+    @Test
+    public void refreshRequestBringsPollForward() {
+        poll(1000, 1200, paused(1200), BACKGROUND);
+        scheduler.requestPollBy(5000);
+        assertNextPollAt(5000);
+        // That poll answers the request, and the slow schedule resumes
+        poll(5000, 5200, paused(5200), BACKGROUND);
+        assertNextPollAt(5200 + PollScheduler.BACKGROUND_IDLE_INTERVAL);
+    }
+
+    @Test
+    public void requestDuringPollSurvivesIt() {
+        scheduler.onPollStarted(1000);
+        scheduler.requestPollBy(1400);
+        scheduler.onPollFinished(paused(1200), 1200, BACKGROUND);
+        assertNextPollAt(1400);
+    }
+}